@@ -0,0 +1,90 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of Alphabet lookups by CharacterRange and by Characters
+ *  holding the same characters, either in order or scattered over
+ *  the whole char range.
+ *  @author John Schulz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AlphabetBench {
+
+    /** Alphabet size. */
+    @Param({"26", "95"})
+    public int size;
+
+    /** Which implementation: "range", "chars" (the characters of the
+     *  range, in order), or "sparse" (characters spread over the whole
+     *  char range). */
+    @Param({"range", "chars", "sparse"})
+    public String kind;
+
+    /** Build the alphabet and its inputs. */
+    @Setup
+    public void setUp() {
+        Alphabet range = BenchUtils.alphabet(size);
+        StringBuilder chars = new StringBuilder();
+        for (int x = 0; x < size; x += 1) {
+            chars.append(kind.equals("sparse") ? (char) (x * SPREAD + 1)
+                         : range.toChar(x));
+        }
+        _alphabet = kind.equals("range") ? range
+            : new Characters(chars.toString());
+        int[] codes = BenchUtils.randomCodes(OPS, size);
+        _chars = new char[OPS];
+        for (int x = 0; x < OPS; x += 1) {
+            _chars[x] = _alphabet.toChar(codes[x]);
+        }
+    }
+
+    /** Return the sum of the indices of OPS characters. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int toInt() {
+        int h = 0;
+        for (char ch : _chars) {
+            h += _alphabet.toInt(ch);
+        }
+        return h;
+    }
+
+    /** Return the number of OPS characters (half of them shifted out of
+     *  the alphabet) that it contains. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int contains() {
+        int n = 0;
+        for (int x = 0; x < OPS; x += 1) {
+            if (_alphabet.contains((char) (_chars[x] + (x & 1)
+                                           * CHAR_SHIFT))) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Number of characters looked up per invocation. */
+    static final int OPS = 1024;
+    /** Distance between characters of a sparse alphabet. */
+    private static final int SPREAD = 613;
+    /** Added to every other character in contains(). */
+    private static final int CHAR_SHIFT = 0x7000;
+
+    /** Alphabet under test. */
+    private Alphabet _alphabet;
+    /** Inputs. */
+    private char[] _chars;
+}
@@ -0,0 +1,116 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/** Fixtures shared by the benchmarks.  Everything is generated from
+ *  fixed seeds, so that runs are comparable.
+ *  @author John Schulz
+ */
+class BenchUtils {
+
+    /** Seed of all generated data. */
+    static final long SEED = 0x5EED;
+
+    /** Return the alphabet of the first SIZE characters starting at ' '
+     *  (starting at 'A' when SIZE is 26, and at character 0 when SIZE
+     *  is 65536). */
+    static Alphabet alphabet(int size) {
+        if (size == ALPHA_SIZE) {
+            return new CharacterRange('A', 'Z');
+        } else if (size == CHAR_COUNT) {
+            return new CharacterRange('\u0000', '\uFFFF');
+        }
+        return new CharacterRange(' ', (char) (' ' + size - 1));
+    }
+
+    /** Return a single cycle, in the notation of Permutation, through
+     *  the characters of ALPHABET in an order chosen by RANDOM.
+     *  Characters that cannot appear in cycles (whitespace and
+     *  parentheses) are left out, and so map to themselves. */
+    static String randomCycle(Alphabet alphabet, Random random) {
+        ArrayList<Character> chars = new ArrayList<>();
+        for (int x = 0; x < alphabet.size(); x += 1) {
+            char ch = alphabet.toChar(x);
+            if (!Character.isWhitespace(ch) && ch != '(' && ch != ')') {
+                chars.add(ch);
+            }
+        }
+        Collections.shuffle(chars, random);
+        StringBuilder cycle = new StringBuilder("(");
+        for (char ch : chars) {
+            cycle.append(ch);
+        }
+        return cycle.append(')').toString();
+    }
+
+    /** Return a reflector permutation of the upper-case alphabet
+     *  ALPHABET that pairs up letters chosen by RANDOM. */
+    static String randomPairs(Alphabet alphabet, Random random) {
+        ArrayList<Character> chars = new ArrayList<>();
+        for (int x = 0; x < alphabet.size(); x += 1) {
+            chars.add(alphabet.toChar(x));
+        }
+        Collections.shuffle(chars, random);
+        StringBuilder pairs = new StringBuilder();
+        for (int x = 0; x + 1 < chars.size(); x += 2) {
+            pairs.append('(').append(chars.get(x)).append(chars.get(x + 1))
+                .append(')');
+        }
+        return pairs.toString();
+    }
+
+    /** Return a machine on the upper-case alphabet with NUMROTORS
+     *  rotors, all but the reflector moving, with random wirings,
+     *  notches and settings, and a plugboard of six pairs.  Composite
+     *  substitution tables are used iff COMPOSITE. */
+    static Machine machine(int numRotors, boolean composite) {
+        Random random = new Random(SEED);
+        Alphabet alpha = alphabet(ALPHA_SIZE);
+        ArrayList<Rotor> catalog = new ArrayList<>();
+        String[] names = new String[numRotors];
+        StringBuilder setting = new StringBuilder();
+        names[0] = "R";
+        catalog.add(new Reflector("R",
+                                  new Permutation(randomPairs(alpha, random),
+                                                  alpha)));
+        for (int x = 1; x < numRotors; x += 1) {
+            names[x] = "M" + x;
+            String notch =
+                String.valueOf(alpha.toChar(random.nextInt(ALPHA_SIZE)));
+            catalog.add(new MovingRotor(names[x],
+                                        new Permutation(randomCycle(alpha,
+                                                                    random),
+                                                        alpha),
+                                        notch));
+            setting.append(alpha.toChar(random.nextInt(ALPHA_SIZE)));
+        }
+        Machine machine = new Machine(alpha, numRotors, numRotors - 1,
+                                      catalog);
+        machine.insertRotors(names);
+        machine.setRotors(setting.toString());
+        String plugs = randomPairs(alpha, random);
+        machine.setPlugboard(new Permutation(plugs.substring(0, PLUG_CHARS),
+                                             alpha));
+        machine.useCompositeTables(composite);
+        return machine;
+    }
+
+    /** Return N random alphabet indices less than SIZE. */
+    static int[] randomCodes(int n, int size) {
+        Random random = new Random(SEED);
+        int[] codes = new int[n];
+        for (int x = 0; x < n; x += 1) {
+            codes[x] = random.nextInt(size);
+        }
+        return codes;
+    }
+
+    /** Size of the upper-case alphabet. */
+    static final int ALPHA_SIZE = 26;
+    /** Number of distinct chars. */
+    static final int CHAR_COUNT = 1 << 16;
+    /** Length of the text of six plugboard pairs. */
+    private static final int PLUG_CHARS = 24;
+}
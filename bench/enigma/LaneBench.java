@@ -0,0 +1,97 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of converting many short messages, each under its own
+ *  start position, with a LaneEngine and with a Machine per message.
+ *  The vector engine is measured only if it is on the class path (see
+ *  vector/Makefile).
+ *  @author John Schulz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LaneBench {
+
+    /** Number of rotors, including the reflector. */
+    @Param({"3", "5"})
+    public int rotors;
+
+    /** Engine: "scalar" or "best" (see LaneEngine.create). */
+    @Param({"scalar", "best"})
+    public String engine;
+
+    /** Build the messages and their machines. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchUtils.SEED);
+        _engine = engine.equals("scalar") ? new ScalarLaneEngine()
+            : LaneEngine.create();
+        _machines = new Machine[MESSAGES];
+        _messages = new int[MESSAGES][];
+        Machine proto = BenchUtils.machine(rotors, false);
+        _batch = new LaneBatch(proto);
+        for (int k = 0; k < MESSAGES; k += 1) {
+            _machines[k] = proto.copy();
+            _machines[k].setPosition(random.nextInt(
+                (int) proto.numPositions()));
+            _messages[k] = BenchUtils.randomCodes(MESSAGE_LENGTH,
+                                                  BenchUtils.ALPHA_SIZE);
+        }
+        _out = new int[MESSAGE_LENGTH];
+    }
+
+    /** Return a batch of MESSAGES messages converted by the engine. */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES * MESSAGE_LENGTH)
+    public LaneBatch lanes() {
+        _batch.clear();
+        for (int k = 0; k < MESSAGES; k += 1) {
+            _batch.add(_machines[k], _messages[k], 0, MESSAGE_LENGTH);
+        }
+        _engine.convert(_batch);
+        return _batch;
+    }
+
+    /** Return the sum of the conversions of MESSAGES messages, each by a
+     *  copy of its machine. */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES * MESSAGE_LENGTH)
+    public int machines() {
+        int h = 0;
+        for (int k = 0; k < MESSAGES; k += 1) {
+            _machines[k].copy().convert(_messages[k], _out, 0,
+                                        MESSAGE_LENGTH);
+            h += _out[MESSAGE_LENGTH - 1];
+        }
+        return h;
+    }
+
+    /** Number of messages per invocation. */
+    static final int MESSAGES = 1024;
+
+    /** Length of each message. */
+    static final int MESSAGE_LENGTH = 120;
+
+    /** Engine under test. */
+    private LaneEngine _engine;
+    /** Reused batch. */
+    private LaneBatch _batch;
+    /** Machine of each message, at its start position. */
+    private Machine[] _machines;
+    /** Messages. */
+    private int[][] _messages;
+    /** Output of machines. */
+    private int[] _out;
+}
@@ -0,0 +1,69 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of Machine.convert on stacks of 3 to 8 rotors (all but
+ *  the reflector moving), one character at a time and in bulk.
+ *  @author John Schulz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MachineBench {
+
+    /** Number of rotors, including the reflector. */
+    @Param({"3", "5", "8"})
+    public int rotors;
+
+    /** True iff composite substitution tables are used. */
+    @Param({"false", "true"})
+    public boolean composite;
+
+    /** Build the machine and its input. */
+    @Setup
+    public void setUp() {
+        _machine = BenchUtils.machine(rotors, composite);
+        _codes = BenchUtils.randomCodes(OPS, BenchUtils.ALPHA_SIZE);
+        _out = new int[OPS];
+    }
+
+    /** Return the conversion of OPS characters, one call per
+     *  character. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int convertChar() {
+        int h = 0;
+        for (int c : _codes) {
+            h += _machine.convert(c);
+        }
+        return h;
+    }
+
+    /** Return the conversion of OPS characters in one call. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int[] convertBulk() {
+        _machine.convert(_codes, _out, 0, OPS);
+        return _out;
+    }
+
+    /** Number of characters converted per invocation. */
+    static final int OPS = 4096;
+
+    /** Machine under test. */
+    private Machine _machine;
+    /** Inputs. */
+    private int[] _codes;
+    /** Outputs of convertBulk. */
+    private int[] _out;
+}
@@ -0,0 +1,73 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** End-to-end benchmark of Main on the inputs in testing/correct:
+ *  reading the configuration, then converting the input file into a
+ *  temporary output file.  The directory holding the tests is given by
+ *  the system property enigma.testing (default ../testing/correct,
+ *  as when run from the bench directory).
+ *  @author John Schulz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MainBench {
+
+    /** Name of the test, F, whose input is F.inp. */
+    @Param({"car1", "extra", "form3", "st", "trivial", "trivial1"})
+    public String test;
+
+    /** Number of worker threads (0 for none). */
+    @Param({"0"})
+    public int threads;
+
+    /** Find the test files and create the output file. */
+    @Setup
+    public void setUp() throws IOException {
+        File dir = new File(System.getProperty("enigma.testing",
+                                               "../testing/correct"));
+        File config = new File(dir, test + ".conf");
+        if (!config.exists()) {
+            config = new File(dir, "default.conf");
+        }
+        _out = File.createTempFile("enigma", ".out");
+        _args = new ArrayList<>();
+        if (threads > 0) {
+            _args.add("--threads=" + threads);
+        }
+        _args.add(config.getPath());
+        _args.add(new File(dir, test + ".inp").getPath());
+        _args.add(_out.getPath());
+    }
+
+    /** Remove the output file. */
+    @TearDown
+    public void tearDown() {
+        _out.delete();
+    }
+
+    /** Run Main on the test. */
+    @Benchmark
+    public void process() {
+        new Main(_args.toArray(new String[0])).process();
+    }
+
+    /** Command-line arguments to Main. */
+    private ArrayList<String> _args;
+    /** Output file. */
+    private File _out;
+}
@@ -0,0 +1,68 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of Permutation.permute and Permutation.invert.
+ *  @author John Schulz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PermutationBench {
+
+    /** Alphabet size. */
+    @Param({"26", "95", "65536"})
+    public int size;
+
+    /** Build the permutation and its inputs. */
+    @Setup
+    public void setUp() {
+        Alphabet alpha = BenchUtils.alphabet(size);
+        _perm = new Permutation(BenchUtils.randomCycle(alpha,
+                                                       new Random(BenchUtils
+                                                                  .SEED)),
+                                alpha);
+        _codes = BenchUtils.randomCodes(OPS, size);
+    }
+
+    /** Return the permutation of OPS random indices. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int permute() {
+        int h = 0;
+        for (int c : _codes) {
+            h += _perm.permute(c);
+        }
+        return h;
+    }
+
+    /** Return the inverse permutation of OPS random indices. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int invert() {
+        int h = 0;
+        for (int c : _codes) {
+            h += _perm.invert(c);
+        }
+        return h;
+    }
+
+    /** Number of characters converted per invocation. */
+    static final int OPS = 1024;
+
+    /** Permutation under test. */
+    private Permutation _perm;
+    /** Inputs. */
+    private int[] _codes;
+}
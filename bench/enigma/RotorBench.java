@@ -0,0 +1,72 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of Rotor.convertForward and Rotor.convertBackward on a
+ *  moving rotor at a nonzero setting.
+ *  @author John Schulz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RotorBench {
+
+    /** Alphabet size. */
+    @Param({"26", "95", "65536"})
+    public int size;
+
+    /** Build the rotor and its inputs. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchUtils.SEED);
+        Alphabet alpha = BenchUtils.alphabet(size);
+        _rotor = new MovingRotor("M",
+                                 new Permutation(BenchUtils
+                                                 .randomCycle(alpha, random),
+                                                 alpha),
+                                 String.valueOf(alpha.toChar(0)));
+        _rotor.set(random.nextInt(size));
+        _codes = BenchUtils.randomCodes(OPS, size);
+    }
+
+    /** Return the forward conversion of OPS random indices. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int convertForward() {
+        int h = 0;
+        for (int c : _codes) {
+            h += _rotor.convertForward(c);
+        }
+        return h;
+    }
+
+    /** Return the backward conversion of OPS random indices. */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public int convertBackward() {
+        int h = 0;
+        for (int c : _codes) {
+            h += _rotor.convertBackward(c);
+        }
+        return h;
+    }
+
+    /** Number of characters converted per invocation. */
+    static final int OPS = 1024;
+
+    /** Rotor under test. */
+    private Rotor _rotor;
+    /** Inputs. */
+    private int[] _codes;
+}
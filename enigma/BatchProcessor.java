@@ -0,0 +1,200 @@
+package enigma;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * Processes the message format of MessageProcessor on a pool of worker
+ * threads.  Every settings line completely resets the machine, so the
+ * input splits into independent blocks, each starting at a settings line
+ * (plus whatever precedes the first one).  Consecutive blocks are
+ * gathered into batches of at least BATCH_SIZE characters, and each
+ * batch is run through its own MessageProcessor by a worker, using a
+ * copy of the prototype machine private to that worker.  Results are
+ * written in input order, and an error in a batch is reported (after
+ * the output that precedes it) just as it would be by a single
+ * MessageProcessor.  Each block is held in memory while it is waiting
+ * or being processed.
+ *
+ * @author John Schulz
+ */
+class BatchProcessor implements InputSink {
+
+    /**
+     * A processor that converts messages with copies of PROTO, whose
+     * alphabet is ALPHABET, using THREADS worker threads, and writes the
+     * results to OUTPUT.  PROTO must not be used by others while I am.
+     */
+    BatchProcessor(Machine proto, Alphabet alphabet, Writer output,
+                   int threads) {
+        if (threads < 1) {
+            throw error("need at least one worker thread");
+        }
+        _alphabet = alphabet;
+        _output = output;
+        _maxPending = PENDING_PER_THREAD * threads;
+        _machines = ThreadLocal.withInitial(proto::copy);
+        _pool = Executors.newFixedThreadPool(threads, (r) -> {
+            Thread t = new Thread(r, "enigma-batch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Add the input character CH to the current batch, treating line
+     * terminators as MessageProcessor does.  Lines are stored with '\n'
+     * as their terminator.
+     */
+    @Override
+    public void feed(char ch) throws IOException {
+        if (_afterCR && ch == '\n') {
+            _afterCR = false;
+            return;
+        }
+        _afterCR = ch == '\r';
+        if (MessageProcessor.isLineTerminator(ch)) {
+            _batch.append('\n');
+            _lineStart = true;
+            return;
+        }
+        if (_lineStart && ch == '*' && _batch.length() >= BATCH_SIZE) {
+            submit();
+        }
+        _batch.append(ch);
+        _lineStart = false;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!_lineStart) {
+            _batch.append('\n');
+            _lineStart = true;
+        }
+        if (_batch.length() > 0) {
+            submit();
+        }
+        while (!_pending.isEmpty()) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Stop my workers.  Batches not yet written are abandoned.
+     */
+    @Override
+    public void close() {
+        _pool.shutdownNow();
+    }
+
+    /**
+     * Hand the current batch to a worker, first writing out completed
+     * batches if too many are outstanding.
+     */
+    private void submit() throws IOException {
+        while (_pending.size() >= _maxPending) {
+            writeNext();
+        }
+        final String text = _batch.toString();
+        _batch = new StringBuilder(BATCH_SIZE);
+        _pending.add(_pool.submit(() -> convert(text)));
+    }
+
+    /**
+     * Wait for the oldest outstanding batch and write its output,
+     * throwing the exception that stopped it, if any.
+     */
+    private void writeNext() throws IOException {
+        Result result;
+        try {
+            result = _pending.remove().get();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("interrupted");
+        } catch (ExecutionException excp) {
+            throw error("conversion failed: %s", excp.getCause());
+        }
+        result.output.writeTo(_output);
+        if (result.error != null) {
+            throw result.error;
+        }
+    }
+
+    /**
+     * Return the result of processing TEXT, a sequence of whole blocks,
+     * with this thread's machine.
+     */
+    private Result convert(String text) throws IOException {
+        CharArrayWriter out =
+            new CharArrayWriter(text.length() + text.length() / 2);
+        MessageProcessor processor =
+            new MessageProcessor(_machines.get(), _alphabet, out);
+        try {
+            for (int x = 0; x < text.length(); x += 1) {
+                processor.feed(text.charAt(x));
+            }
+            processor.finish();
+            return new Result(out, null);
+        } catch (RuntimeException excp) {
+            processor.close();
+            return new Result(out, excp);
+        }
+    }
+
+    /** The output of a batch, and the exception that stopped it (null if
+     *  it completed). */
+    private static class Result {
+        /** A Result with OUTPUT and ERROR. */
+        Result(CharArrayWriter output, RuntimeException error) {
+            this.output = output;
+            this.error = error;
+        }
+
+        /** Converted text. */
+        private final CharArrayWriter output;
+        /** Exception that stopped processing, or null. */
+        private final RuntimeException error;
+    }
+
+    /** Alphabet of the machines. */
+    private final Alphabet _alphabet;
+
+    /** Destination of converted messages. */
+    private final Writer _output;
+
+    /** Each worker's own copy of the prototype machine. */
+    private final ThreadLocal<Machine> _machines;
+
+    /** The worker threads. */
+    private final ExecutorService _pool;
+
+    /** Batches handed to workers and not yet written, in input order. */
+    private final ArrayDeque<Future<Result>> _pending = new ArrayDeque<>();
+
+    /** Largest number of batches outstanding at once. */
+    private final int _maxPending;
+
+    /** The batch being gathered. */
+    private StringBuilder _batch = new StringBuilder(BATCH_SIZE);
+
+    /** True iff nothing has been read on the current input line. */
+    private boolean _lineStart = true;
+
+    /** True iff the previous input character was '\r'. */
+    private boolean _afterCR;
+
+    /** A new batch is started at a settings line once the current one
+     *  holds at least this many characters. */
+    static final int BATCH_SIZE = 1 << 16;
+
+    /** Number of outstanding batches allowed per worker thread. */
+    private static final int PENDING_PER_THREAD = 4;
+}
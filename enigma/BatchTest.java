@@ -0,0 +1,131 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests that BatchProcessor converts exactly as MessageProcessor does.
+ *  @author John Schulz
+ */
+public class BatchTest {
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Settings lines used in the tests. */
+    private static final String[] SETTINGS = {
+        "* B BETA I II III AXLE (YF) (ZH)",
+        "* B BETA III II I AAAA",
+        "* B BETA II III I ZZZZ (AB) (CD) (EF)",
+    };
+
+    /** Return an input of about SIZE characters drawn with RAND: blocks
+     *  of several message lines, some blank, each block beginning with
+     *  a settings line, with lines ended by EOL.  If BAD is not null,
+     *  it replaces the settings line of the last block. */
+    private static String input(Random rand, int size, String eol,
+                                String bad) {
+        StringBuilder result = new StringBuilder();
+        int lastBlock = 0;
+        while (result.length() < size) {
+            lastBlock = result.length();
+            result.append(SETTINGS[rand.nextInt(SETTINGS.length)])
+                .append(eol);
+            for (int n = rand.nextInt(6); n >= 0; n -= 1) {
+                for (int k = rand.nextInt(40); k > 0; k -= 1) {
+                    result.append(rand.nextInt(5) == 0 ? ' '
+                                  : (char) ('A' + rand.nextInt(26)));
+                }
+                result.append(eol);
+            }
+        }
+        if (bad != null) {
+            int end = result.indexOf(eol, lastBlock);
+            result.replace(lastBlock, end, bad);
+        }
+        return result.toString();
+    }
+
+    /** Return the output of SINK, writing to OUT, on INPUT, followed by
+     *  the message of the EnigmaException that ended it, if any.  SINK
+     *  is closed first, as Main does. */
+    private static String run(InputSink sink, StringWriter out,
+                              String input) throws IOException {
+        String error = "";
+        try {
+            for (int x = 0; x < input.length(); x += 1) {
+                sink.feed(input.charAt(x));
+            }
+            sink.finish();
+        } catch (EnigmaException excp) {
+            error = "Error: " + excp.getMessage();
+        } finally {
+            sink.close();
+        }
+        return out.toString() + error;
+    }
+
+    /** Check that INPUT converts the same sequentially and on THREADS
+     *  worker threads. */
+    private static void check(String input, int threads)
+        throws IOException {
+        StringWriter seq = new StringWriter(), par = new StringWriter();
+        String expected =
+            run(new MessageProcessor(MachTest.navalMachine("AAAA"),
+                                     TestUtils.UPPER, seq), seq, input);
+        String result =
+            run(new BatchProcessor(MachTest.navalMachine("AAAA"),
+                                   TestUtils.UPPER, par, threads),
+                par, input);
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void testManyBatches() throws IOException {
+        String input =
+            input(new Random(9), 5 * BatchProcessor.BATCH_SIZE, "\n", null);
+        for (int threads = 1; threads <= 4; threads += 1) {
+            check(input, threads);
+        }
+    }
+
+    @Test
+    public void testLineTerminators() throws IOException {
+        check(input(new Random(10), 3 * BatchProcessor.BATCH_SIZE,
+                    "\r\n", null), 3);
+        check(input(new Random(11), 3 * BatchProcessor.BATCH_SIZE,
+                    "\r", null), 3);
+        String mixed =
+            input(new Random(12), 3 * BatchProcessor.BATCH_SIZE, "\n", null)
+            .replace("\nA", "\r\nA").replace("\nB", "\rB");
+        check(mixed + "NO NEWLINE AT END", 2);
+    }
+
+    @Test
+    public void testBlankStart() throws IOException {
+        check("\n\r\n\n" + input(new Random(13), BatchProcessor.BATCH_SIZE,
+                                 "\n", null), 2);
+    }
+
+    @Test
+    public void testLateError() throws IOException {
+        String input = input(new Random(14), 4 * BatchProcessor.BATCH_SIZE,
+                             "\r\n", "* B BETA I II NOSUCH AAAA");
+        for (int threads = 1; threads <= 4; threads += 1) {
+            check(input, threads);
+        }
+        StringWriter out = new StringWriter();
+        String result =
+            run(new BatchProcessor(MachTest.navalMachine("AAAA"),
+                                   TestUtils.UPPER, out, 4), out, input);
+        assertTrue(result.contains("Error: "));
+        assertTrue(out.toString().length() > 2 * BatchProcessor.BATCH_SIZE);
+    }
+}
@@ -0,0 +1,551 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * A known-plaintext key search in the manner of the Turing-Welchman
+ * Bombe.  A crib (a guess at part of the plaintext) lined up against
+ * the ciphertext gives a menu: for each crib position I, an edge
+ * between the crib letter and the cipher letter, labeled I.  For a
+ * rotor order and start position, let S_I be the substitution the rotors
+ * perform at position I (without plugboard), and P the plugboard; then
+ * every edge (A, B, I) requires P(B) = S_I(P(A)).  Guessing P of one
+ * letter of each connected part of the menu and following the edges
+ * either runs into a contradiction (P must be an involution) or yields
+ * a consistent partial plugboard; keys for which some guess survives in
+ * every part are reported as candidates, together with the plugboard
+ * pairs deduced.  Like the stops of the Bombe, candidates still need
+ * checking, since letters not reached by the menu are assumed to be
+ * unplugged.
+ *
+ * Every rotor order allowed by the catalog (a reflector, then
+ * non-moving rotors, then numPawls() moving rotors, all distinct) is
+ * tried at every start position.  The work is divided among the
+ * threads of a ForkJoinPool, each task using its own copy of the
+ * machine.
+ *
+ * @author John Schulz
+ */
+class Bombe {
+
+    /**
+     * A search for the keys of MACHINE (whose current rotors and
+     * plugboard are ignored) under which CRIB enciphers to the text of
+     * CIPHER starting at OFFSET.  CRIB and CIPHER are strings of
+     * characters in the machine's alphabet.
+     */
+    Bombe(Machine machine, String cipher, String crib, int offset) {
+        Alphabet alpha = machine.alphabet();
+        _size = alpha.size();
+        if (crib.isEmpty()) {
+            throw error("empty crib");
+        }
+        if (offset < 0 || offset + crib.length() > cipher.length()) {
+            throw error("crib does not fit in the ciphertext");
+        }
+        _base = machine.copy();
+        _base.setPlugboard(new Permutation("", alpha));
+        _offset = offset;
+        _cribLength = crib.length();
+        ArrayList<ArrayList<Integer>> edges = new ArrayList<>();
+        for (int a = 0; a < _size; a += 1) {
+            edges.add(new ArrayList<>());
+        }
+        for (int i = 0; i < _cribLength; i += 1) {
+            int p = alpha.toInt(crib.charAt(i)),
+                c = alpha.toInt(cipher.charAt(offset + i));
+            edges.get(p).add(c * _cribLength + i);
+            edges.get(c).add(p * _cribLength + i);
+        }
+        _edges = new int[_size][];
+        for (int a = 0; a < _size; a += 1) {
+            _edges[a] = edges.get(a).stream().mapToInt(e -> e).toArray();
+        }
+        _roots = menuRoots();
+        for (Rotor r : _base.getAllRotors()) {
+            Permutation perm = r.permutation();
+            for (int c = 0; r instanceof Reflector && c < _size; c += 1) {
+                if (perm.permute(perm.permute(c)) != c) {
+                    throw error("reflector %s does not consist of pairs",
+                                r.name());
+                }
+            }
+        }
+        _orders = _base.rotorOrders();
+        _positions = _base.numPositions();
+    }
+
+    /**
+     * Return one letter from each connected part of the menu, the one
+     * with the most edges, ordered from the part with the most edges to
+     * the part with the fewest (parts with equal numbers of edges in
+     * letter order).  Large parts admit few guesses, so the search
+     * backtracks over them first, and small parts, which admit many,
+     * are tried last.
+     */
+    private int[] menuRoots() {
+        int[] part = new int[_size];
+        ArrayList<int[]> roots = new ArrayList<>();
+        for (int a = 0; a < _size; a += 1) {
+            if (part[a] != 0 || _edges[a].length == 0) {
+                continue;
+            }
+            int root = a, ends = 0;
+            ArrayList<Integer> queue = new ArrayList<>();
+            queue.add(a);
+            part[a] = roots.size() + 1;
+            for (int k = 0; k < queue.size(); k += 1) {
+                int b = queue.get(k);
+                ends += _edges[b].length;
+                if (_edges[b].length > _edges[root].length) {
+                    root = b;
+                }
+                for (int e : _edges[b]) {
+                    int c = e / _cribLength;
+                    if (part[c] == 0) {
+                        part[c] = part[a];
+                        queue.add(c);
+                    }
+                }
+            }
+            roots.add(new int[] { root, ends });
+        }
+        roots.sort((x, y) -> Integer.compare(y[1], x[1]));
+        return roots.stream().mapToInt(r -> r[0]).toArray();
+    }
+
+    /** Return the roots of the parts of the menu, in the order in which
+     *  they are searched (see menuRoots). */
+    int[] roots() {
+        return _roots.clone();
+    }
+
+    /**
+     * Try every key using the threads of POOL, and return the
+     * candidates found, in order of rotor order and start position.
+     */
+    List<Candidate> search(ForkJoinPool pool) {
+        List<Candidate> found =
+            Collections.synchronizedList(new ArrayList<>());
+        pool.invoke(new SearchTask(0, _orders.size(), 0, _positions,
+                                   found));
+        ArrayList<Candidate> result = new ArrayList<>(found);
+        result.sort((a, b) -> a._order != b._order
+                    ? Integer.compare(a._order, b._order)
+                    : Long.compare(a._position, b._position));
+        return result;
+    }
+
+    /** Return the number of keys tried so far. */
+    long keysTried() {
+        return _tried.sum();
+    }
+
+    /** Return the number of guesses followed through the menu so far,
+     *  a measure of the work done on the keys tried. */
+    long guessesTried() {
+        return _guesses.sum();
+    }
+
+    /** Return the number of keys in the search space. */
+    long keys() {
+        return _orders.size() * _positions;
+    }
+
+    /**
+     * Try the keys consisting of rotor orders ORDERLO .. ORDERHI - 1 and
+     * start positions POSLO .. POSHI - 1, splitting the work into
+     * subtasks if there is much of it, and add the candidates to FOUND.
+     */
+    private class SearchTask extends RecursiveAction {
+        /** A task trying rotor orders ORDERLO .. ORDERHI - 1 at start
+         *  positions POSLO .. POSHI - 1, adding candidates to FOUND. */
+        SearchTask(int orderLo, int orderHi, long posLo, long posHi,
+                   List<Candidate> found) {
+            _orderLo = orderLo;
+            _orderHi = orderHi;
+            _posLo = posLo;
+            _posHi = posHi;
+            _found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (_orderHi - _orderLo > 1) {
+                int mid = (_orderLo + _orderHi) >>> 1;
+                invokeAll(new SearchTask(_orderLo, mid, _posLo, _posHi,
+                                         _found),
+                          new SearchTask(mid, _orderHi, _posLo, _posHi,
+                                         _found));
+            } else if (_posHi - _posLo > TASK_KEYS) {
+                long mid = (_posLo + _posHi) >>> 1;
+                invokeAll(new SearchTask(_orderLo, _orderHi, _posLo, mid,
+                                         _found),
+                          new SearchTask(_orderLo, _orderHi, mid, _posHi,
+                                         _found));
+            } else if (_orderHi > _orderLo) {
+                tryKeys(_orderLo, _posLo, _posHi, _found);
+            }
+        }
+
+        /** Range of rotor orders. */
+        private final int _orderLo, _orderHi;
+        /** Range of start positions. */
+        private final long _posLo, _posHi;
+        /** Candidates found. */
+        private final List<Candidate> _found;
+        /** Serialization version (tasks are never serialized). */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Try rotor order number ORDER at start positions POSLO .. POSHI - 1,
+     * adding the candidates to FOUND.
+     */
+    private void tryKeys(int order, long posLo, long posHi,
+                         List<Candidate> found) {
+        Machine m = _base.copy();
+        m.insertRotors(_orders.get(order));
+        KeyTester tester = new KeyTester(m);
+        for (long pos = posLo; pos < posHi; pos += 1) {
+            if (tester.test(pos)) {
+                found.add(new Candidate(order, pos, tester._plugs));
+            }
+        }
+        _tried.add(posHi - posLo);
+        _guesses.add(tester._propagations);
+    }
+
+    /** Tests the keys of one rotor order against the menu.  Rotor
+     *  substitutions are computed only as the menu calls for them. */
+    private class KeyTester {
+        /** A tester using MACHINE, whose rotors have been inserted. */
+        KeyTester(Machine machine) {
+            _machine = machine;
+            _rotors = machine.getRotors();
+            _states = new int[_cribLength][_rotors.length];
+            _guesses = new int[_roots.length][_size];
+            _numGuesses = new int[_roots.length];
+            if (_roots.length > 0) {
+                for (int h = 0; h < _size; h += 1) {
+                    _guesses[0][h] = h;
+                }
+                _numGuesses[0] = _size;
+            }
+        }
+
+        /**
+         * Return true iff the start position with index POS (in which
+         * slot 1 is the most significant digit) is consistent with the
+         * menu, leaving the plugboard deduced in _plugs.
+         */
+        boolean test(long pos) {
+            _machine.setPosition(pos);
+            if (_offset > 0) {
+                _machine.advanceBy(_offset);
+            }
+            for (int i = 0; i < _cribLength; i += 1) {
+                _machine.step();
+                for (int x = 1; x < _rotors.length; x += 1) {
+                    _states[i][x] = _rotors[x].setting();
+                }
+            }
+            _key += 1;
+            _current = -1;
+            return consistent();
+        }
+
+        /**
+         * Return the rotors' substitution of C at crib position I.
+         */
+        private int substitution(int i, int c) {
+            if (_stamps[i][c] != _key) {
+                if (_current != i) {
+                    for (int x = 1; x < _rotors.length; x += 1) {
+                        _rotors[x].set(_states[i][x]);
+                    }
+                    _current = i;
+                }
+                int d = _machine.substitute(c);
+                _tables[i][c] = d;
+                _tables[i][d] = c;
+                _stamps[i][c] = _stamps[i][d] = _key;
+            }
+            return _tables[i][c];
+        }
+
+        /**
+         * Return true iff there is a plugboard consistent with the menu
+         * for the current key.  If so, _plugs[A] is then the plugboard
+         * partner of A for each letter A reached from the menu, and -1
+         * for other letters.
+         */
+        boolean consistent() {
+            Arrays.fill(_plugs, -1);
+            return consistent(0, 0);
+        }
+
+        /**
+         * Return true iff the guesses made for the parts of the menu
+         * before root number R, which assigned the N letters in
+         * _trail[0 .. N - 1], extend to a plugboard consistent with the
+         * parts from R on.  Tries each guess in _guesses[R] in turn,
+         * backtracking when the later parts cannot be satisfied, since
+         * a part with few edges accepts guesses that may take letters a
+         * later part needs.  The first time the search reaches a part
+         * after the first for the current key, it finds the guesses
+         * that part admits on its own (see findGuesses), so the
+         * backtracking tries only those, and gives up on the key at
+         * once if there are none.  On failure, undoes the assignments
+         * made beyond the first N.
+         */
+        private boolean consistent(int r, int n) {
+            if (r == _roots.length) {
+                return true;
+            }
+            if (r > 0 && _checked[r] != _key && !findGuesses(r, n)) {
+                return false;
+            }
+            for (int g = 0; g < _numGuesses[r]; g += 1) {
+                int m = propagate(_roots[r], _guesses[r][g], n);
+                if (m >= 0 && consistent(r + 1, m)) {
+                    return true;
+                }
+                for (int k = n; k < (m >= 0 ? m : -m - 1); k += 1) {
+                    _plugs[_trail[k]] = -1;
+                }
+                if (_hopeless == _key) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Set _guesses[R] and _numGuesses[R] to the partners of root
+         * number R that lead to no contradiction within its part of the
+         * menu taken alone, ignoring the N letters in _trail[0 .. N - 1]
+         * assigned by the parts before it, which are restored after.
+         * A guess the part rejects alone it rejects whatever the other
+         * parts assign.  Return true iff there are any such partners,
+         * and otherwise mark the current key as hopeless.
+         */
+        private boolean findGuesses(int r, int n) {
+            for (int k = 0; k < n; k += 1) {
+                _saved[k] = _trail[k];
+                _savedPlugs[k] = _plugs[_trail[k]];
+                _plugs[_trail[k]] = -1;
+            }
+            int count = 0;
+            for (int h = 0; h < _size; h += 1) {
+                int m = propagate(_roots[r], h, 0);
+                if (m >= 0) {
+                    _guesses[r][count] = h;
+                    count += 1;
+                }
+                for (int k = 0; k < (m >= 0 ? m : -m - 1); k += 1) {
+                    _plugs[_trail[k]] = -1;
+                }
+            }
+            for (int k = 0; k < n; k += 1) {
+                _trail[k] = _saved[k];
+                _plugs[_saved[k]] = _savedPlugs[k];
+            }
+            _numGuesses[r] = count;
+            _checked[r] = _key;
+            if (count == 0) {
+                _hopeless = _key;
+            }
+            return count > 0;
+        }
+
+        /**
+         * Assume that ROOT is plugged to H, and follow the consequences
+         * through ROOT's part of the menu, recording the partners deduced
+         * in _plugs and listing the letters newly assigned in _trail
+         * after the first N, which were assigned before.  Return the
+         * total number of letters assigned if no contradiction arises,
+         * and otherwise -1 - that number.
+         */
+        private int propagate(int root, int h, int n) {
+            _propagations += 1;
+            n = plug(root, h, n);
+            if (n < 0) {
+                return n;
+            }
+            _queue[0] = root;
+            _seen[root] = true;
+            int len = 1;
+            for (int k = 0; k < len && n >= 0; k += 1) {
+                int b = _queue[k];
+                for (int e : _edges[b]) {
+                    int c = e / _cribLength;
+                    n = plug(c, substitution(e % _cribLength, _plugs[b]),
+                             n);
+                    if (n < 0) {
+                        break;
+                    }
+                    if (!_seen[c]) {
+                        _seen[c] = true;
+                        _queue[len] = c;
+                        len += 1;
+                    }
+                }
+            }
+            for (int k = 0; k < len; k += 1) {
+                _seen[_queue[k]] = false;
+            }
+            return n;
+        }
+
+        /**
+         * Record that A and X are plugged together, given that
+         * _trail[0 .. N - 1] lists the letters assigned so far, adding
+         * any newly assigned letters to _trail.  Return the new number
+         * of letters assigned, or -1 - N if A or X is already plugged to
+         * another letter.
+         */
+        private int plug(int a, int x, int n) {
+            if (_plugs[a] == x) {
+                return n;
+            } else if (_plugs[a] != -1 || _plugs[x] != -1) {
+                return -1 - n;
+            }
+            _plugs[a] = x;
+            _trail[n] = a;
+            n += 1;
+            if (x != a) {
+                _plugs[x] = a;
+                _trail[n] = x;
+                n += 1;
+            }
+            return n;
+        }
+
+        /** _guesses[R][0 .. _numGuesses[R] - 1] are the partners of root
+         *  number R tried by the joint search for the current key. */
+        private final int[][] _guesses;
+        /** Numbers of guesses in _guesses. */
+        private final int[] _numGuesses;
+        /** Number of calls to propagate. */
+        private long _propagations;
+        /** _checked[R] is the value of _key for which _guesses[R] was
+         *  last found. */
+        private final int[] _checked = new int[_roots.length];
+        /** The value of _key when a part of the menu was last found to
+         *  admit no guesses. */
+        private int _hopeless;
+        /** The letters in _trail, and their partners, set aside while
+         *  finding guesses. */
+        private final int[] _saved = new int[_size],
+            _savedPlugs = new int[_size];
+        /** The machine whose rotors are tested. */
+        private final Machine _machine;
+        /** Its rotors. */
+        private final Rotor[] _rotors;
+        /** _states[I][X] is the setting of rotor X at crib position I. */
+        private final int[][] _states;
+        /** Crib position to which the rotors are set, or -1. */
+        private int _current;
+        /** Number of the current key. */
+        private int _key;
+        /** _tables[I][C] is the rotors' substitution of C at crib
+         *  position I, if _stamps[I][C] is _key. */
+        private final int[][] _tables = new int[_cribLength][_size];
+        /** Keys for which the entries of _tables were computed. */
+        private final int[][] _stamps = new int[_cribLength][_size];
+        /** Plugboard partners deduced, or -1. */
+        private final int[] _plugs = new int[_size];
+        /** Letters assigned by the current guesses, in order. */
+        private final int[] _trail = new int[_size];
+        /** Letters whose edges are to be followed. */
+        private final int[] _queue = new int[_size];
+        /** _seen[A] iff A has been added to _queue. */
+        private final boolean[] _seen = new boolean[_size];
+    }
+
+    /** A key consistent with the crib. */
+    class Candidate {
+        /** The key using rotor order number ORDER at start position
+         *  POSITION, with plugboard partners PLUGS (-1 if unknown). */
+        Candidate(int order, long position, int[] plugs) {
+            _order = order;
+            _position = position;
+            Alphabet alpha = _base.alphabet();
+            _setting = _base.positionSetting(position);
+            StringBuilder pairs = new StringBuilder();
+            for (int a = 0; a < plugs.length; a += 1) {
+                if (plugs[a] > a) {
+                    pairs.append(" (").append(alpha.toChar(a))
+                        .append(alpha.toChar(plugs[a])).append(')');
+                }
+            }
+            _plugboard = pairs.toString();
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] rotors() {
+            return _orders.get(_order).clone();
+        }
+
+        /** Return my start position, as for Machine.setRotors. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return my plugboard pairs, as for a settings line. */
+        String plugboard() {
+            return _plugboard.trim();
+        }
+
+        /** Return me as a settings line of Main's input. */
+        @Override
+        public String toString() {
+            return "* " + String.join(" ", _orders.get(_order)) + " "
+                + _setting + _plugboard;
+        }
+
+        /** Index of my rotor order. */
+        private final int _order;
+        /** Index of my start position. */
+        private final long _position;
+        /** Start position. */
+        private final String _setting;
+        /** Plugboard pairs, each preceded by a blank. */
+        private final String _plugboard;
+    }
+
+    /** Number of keys in the smallest task. */
+    private static final long TASK_KEYS = 1 << 12;
+
+    /** Machine from which those of the tasks are copied. */
+    private final Machine _base;
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Position of the crib in the ciphertext. */
+    private final int _offset;
+    /** Length of the crib. */
+    private final int _cribLength;
+    /** The menu: _edges[A] lists B * _cribLength + I for each edge
+     *  (A, B, I). */
+    private final int[][] _edges;
+    /** One letter from each connected part of the menu, in search
+     *  order (see menuRoots). */
+    private final int[] _roots;
+    /** The rotor orders to be tried. */
+    private final List<String[]> _orders;
+    /** Number of start positions of each rotor order. */
+    private final long _positions;
+    /** Number of keys tried. */
+    private final LongAdder _tried = new LongAdder();
+    /** Number of guesses followed through the menu. */
+    private final LongAdder _guesses = new LongAdder();
+}
@@ -0,0 +1,154 @@
+package enigma;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests of Bombe.
+ *  @author John Schulz
+ */
+public class BombeTest {
+
+    /** Return a machine with reflector B and moving rotors I, II and
+     *  III in two slots, with no rotors inserted. */
+    static Machine smallMachine() {
+        ArrayList<Rotor> all = new ArrayList<>();
+        all.add(new Reflector("B", new Permutation(TestUtils.NAVALA.get("B"),
+                                                   TestUtils.UPPER)));
+        String[] names = {"I", "II", "III"};
+        String[] notches = {"Q", "E", "V"};
+        for (int k = 0; k < names.length; k += 1) {
+            all.add(new MovingRotor(names[k],
+                                    new Permutation(TestUtils.NAVALA
+                                                    .get(names[k]),
+                                                    TestUtils.UPPER),
+                                    notches[k]));
+        }
+        return new Machine(TestUtils.UPPER, 3, 2, all);
+    }
+
+    @Test
+    public void testFindsKey() {
+        Machine mach = smallMachine();
+        mach.insertRotors(new String[] {"B", "III", "I"});
+        mach.setRotors("KP");
+        mach.setPlugboard(new Permutation("(AT) (BK) (MZ)",
+                                          TestUtils.UPPER));
+        String plain = "XYWETTERVORHERSAGEBISKAYAHEUTE";
+        String cipher = mach.convert(plain);
+
+        Bombe bombe = new Bombe(smallMachine(), cipher,
+                                "WETTERVORHERSAGEBISKAYA", 2);
+        List<Bombe.Candidate> found = bombe.search(new ForkJoinPool(2));
+        assertEquals(6 * 26 * 26, bombe.keysTried());
+        boolean hit = false;
+        for (Bombe.Candidate c : found) {
+            if (c.toString().equals("* B III I KP (AT) (BK) (MZ)")) {
+                hit = true;
+            }
+        }
+        assertTrue("key not found among " + found, hit);
+    }
+
+    /** Return a random string of LEN letters from RAND. */
+    private static String randomText(Random rand, int len) {
+        char[] text = new char[len];
+        for (int x = 0; x < len; x += 1) {
+            text[x] = (char) ('A' + rand.nextInt(26));
+        }
+        return new String(text);
+    }
+
+    /** Check that, for TRIALS random keys with PAIRS plugboard pairs
+     *  drawn from a generator seeded with SEED, and random cribs of
+     *  10 to 19 letters in random 40-letter texts, the rotors and
+     *  setting of the key are always among the candidates found. */
+    private void checkRandomKeys(long seed, int pairs, int trials) {
+        Random rand = new Random(seed);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        String[][] orders = {{"B", "I", "II"}, {"B", "II", "III"},
+                             {"B", "III", "I"}, {"B", "II", "I"}};
+        for (int t = 0; t < trials; t += 1) {
+            String[] rotors = orders[rand.nextInt(orders.length)];
+            String setting = randomText(rand, 2);
+            List<Character> letters = new ArrayList<>();
+            for (char c = 'A'; c <= 'Z'; c += 1) {
+                letters.add(c);
+            }
+            Collections.shuffle(letters, rand);
+            StringBuilder plugs = new StringBuilder();
+            for (int k = 0; k < pairs; k += 1) {
+                plugs.append('(').append(letters.get(2 * k))
+                    .append(letters.get(2 * k + 1)).append(')');
+            }
+            Machine mach = smallMachine();
+            mach.insertRotors(rotors);
+            mach.setRotors(setting);
+            mach.setPlugboard(new Permutation(plugs.toString(),
+                                              TestUtils.UPPER));
+            String plain = randomText(rand, 40);
+            String cipher = mach.convert(plain);
+            int len = 10 + rand.nextInt(10);
+            int offset = rand.nextInt(40 - len + 1);
+            Bombe bombe =
+                new Bombe(smallMachine(), cipher,
+                          plain.substring(offset, offset + len), offset);
+            String key = "* " + String.join(" ", rotors) + " " + setting;
+            boolean hit = false;
+            for (Bombe.Candidate c : bombe.search(pool)) {
+                String found = "* " + String.join(" ", c.rotors()) + " "
+                    + c.setting();
+                hit |= found.equals(key);
+            }
+            assertTrue("trial " + t + ": " + key + " not found", hit);
+        }
+    }
+
+    @Test
+    public void testRandomKeys() {
+        checkRandomKeys(14, 10, 20);
+        checkRandomKeys(15, 0, 20);
+    }
+
+    @Test
+    public void testRootOrder() {
+        Bombe bombe = new Bombe(smallMachine(), "FBCQRSP", "EABPQRS", 0);
+        int[] expected = {
+            TestUtils.UPPER.toInt('P'), TestUtils.UPPER.toInt('B'),
+            TestUtils.UPPER.toInt('E')
+        };
+        assertArrayEquals(expected, bombe.roots());
+    }
+
+    @Test
+    public void testMultiPartMenu() {
+        Machine mach = smallMachine();
+        mach.insertRotors(new String[] {"B", "III", "I"});
+        mach.setRotors("KP");
+        mach.setPlugboard(new Permutation("(AT) (BK) (MZ)",
+                                          TestUtils.UPPER));
+        String crib = "FLIEGERANGRIFF";
+        Bombe bombe = new Bombe(smallMachine(), mach.convert(crib), crib, 0);
+        int[] roots = bombe.roots();
+        assertEquals(4, roots.length);
+        assertEquals(TestUtils.UPPER.toInt('G'), roots[0]);
+        List<Bombe.Candidate> found = bombe.search(new ForkJoinPool(2));
+        assertTrue(found.toString(),
+                   found.toString().contains("* B III I KP (AT)"));
+        assertTrue("too many guesses: " + bombe.guessesTried(),
+                   bombe.guessesTried() < 2 * 26 * bombe.keysTried());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testCribTooLong() {
+        new Bombe(smallMachine(), "ABC", "ABCD", 0);
+    }
+}
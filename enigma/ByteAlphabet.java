@@ -0,0 +1,110 @@
+package enigma;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * The alphabet of the 256 byte values, for converting binary data (see
+ * Main's --binary option).  Byte B is the character (char) B and has
+ * index B, so that a byte is its own index.  Since most of these
+ * characters cannot be written in a configuration file, configurations
+ * with this alphabet (written NAME) give cycles, notches and settings
+ * as pairs of hexadecimal digits, one pair per byte: "(4142ff)" is the
+ * cycle 0x41 -> 0x42 -> 0xff -> 0x41.
+ *
+ * @author John Schulz
+ */
+class ByteAlphabet extends Alphabet {
+
+    @Override
+    int size() {
+        return SIZE;
+    }
+
+    @Override
+    boolean contains(char ch) {
+        return ch < SIZE;
+    }
+
+    @Override
+    char toChar(int index) {
+        if (index < 0 || index >= SIZE) {
+            throw error("character index out of range");
+        }
+        return (char) index;
+    }
+
+    @Override
+    int toInt(char ch) {
+        if (ch >= SIZE) {
+            throw error("character not in alphabet");
+        }
+        return ch;
+    }
+
+    /**
+     * Return the characters whose bytes are written in HEX as pairs of
+     * hexadecimal digits.
+     */
+    static String fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw error("odd number of hex digits in '%s'", hex);
+        }
+        char[] result = new char[hex.length() / 2];
+        for (int x = 0; x < result.length; x += 1) {
+            int hi = Character.digit(hex.charAt(2 * x), HEX_RADIX),
+                lo = Character.digit(hex.charAt(2 * x + 1), HEX_RADIX);
+            if (hi < 0 || lo < 0) {
+                throw error("bad hex digits in '%s'", hex);
+            }
+            result[x] = (char) (hi * HEX_RADIX + lo);
+        }
+        return new String(result);
+    }
+
+    /**
+     * Return the permutation of the byte alphabet ALPHA given by CYCLES,
+     * a sequence of cycles in hexadecimal notation such as
+     * "(4142ff)(00)".  Bytes not mentioned map to themselves.
+     */
+    static Permutation permutation(String cycles, Alphabet alpha) {
+        int[] forward = new int[SIZE], inverse = new int[SIZE];
+        for (int x = 0; x < SIZE; x += 1) {
+            forward[x] = inverse[x] = -1;
+        }
+        int x = 0;
+        while (x < cycles.length()) {
+            int close = cycles.indexOf(')', x);
+            if (cycles.charAt(x) != '(' || close < 0) {
+                throw error("bad cycle notation: %s", cycles);
+            }
+            String cycle = fromHex(cycles.substring(x + 1, close));
+            for (int k = 0; k < cycle.length(); k += 1) {
+                int from = cycle.charAt(k),
+                    to = cycle.charAt((k + 1) % cycle.length());
+                if (forward[from] != -1) {
+                    throw error("byte %02x appears twice in %s", from,
+                                cycles);
+                }
+                forward[from] = to;
+                inverse[to] = from;
+            }
+            x = close + 1;
+        }
+        for (int b = 0; b < SIZE; b += 1) {
+            if (forward[b] == -1) {
+                forward[b] = inverse[b] = b;
+            }
+        }
+        return new Permutation(forward, inverse, alpha);
+    }
+
+    /** Name of this alphabet in configuration files.  It is not a valid
+     *  alphabet of characters, since it repeats characters. */
+    static final String NAME = "0x00-0xff";
+
+    /** Number of byte values. */
+    static final int SIZE = 256;
+
+    /** Radix of hexadecimal digits. */
+    private static final int HEX_RADIX = 16;
+}
@@ -0,0 +1,138 @@
+package enigma;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/** Tests of the byte alphabet and of converting bytes with
+ *  Machine.convert(byte[], int, int).
+ *  @author John Schulz
+ */
+public class BytesTest {
+
+    /** Return PERM, a permutation of 0 .. 255, in hexadecimal cycle
+     *  notation. */
+    private static String cycles(int[] perm) {
+        StringBuilder result = new StringBuilder();
+        boolean[] seen = new boolean[perm.length];
+        for (int start = 0; start < perm.length; start += 1) {
+            if (!seen[start]) {
+                result.append('(');
+                for (int b = start; !seen[b]; b = perm[b]) {
+                    seen[b] = true;
+                    result.append(String.format("%02x", b));
+                }
+                result.append(')');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return a random permutation of 0 .. 255 from RAND, in which every
+     *  element is in a cycle of two iff PAIRS. */
+    private static int[] randomPerm(Random rand, boolean pairs) {
+        List<Integer> order = new ArrayList<>();
+        for (int b = 0; b < ByteAlphabet.SIZE; b += 1) {
+            order.add(b);
+        }
+        Collections.shuffle(order, rand);
+        int[] perm = new int[ByteAlphabet.SIZE];
+        for (int x = 0; x < perm.length; x += 1) {
+            if (pairs) {
+                perm[order.get(x)] = order.get(x ^ 1);
+            } else {
+                perm[order.get(x)] = order.get((x + 1) % perm.length);
+            }
+        }
+        return perm;
+    }
+
+    /** Return a set-up byte machine with a reflector and three moving
+     *  rotors, whose wirings are drawn at random with SEED and whose
+     *  notches make the middle rotors move (and double step) often. */
+    private static Machine byteMachine(long seed) {
+        Random rand = new Random(seed);
+        Alphabet alpha = new ByteAlphabet();
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", ByteAlphabet.permutation(
+            cycles(randomPerm(rand, true)), alpha)));
+        String[] notches = { "00", "0010203040", "07ff80" };
+        for (int x = 0; x < notches.length; x += 1) {
+            Permutation perm = ByteAlphabet.permutation(
+                cycles(randomPerm(rand, false)), alpha);
+            rotors.add(new MovingRotor("M" + x, perm,
+                                       ByteAlphabet.fromHex(notches[x])));
+        }
+        Machine m = new Machine(alpha, 4, 3, rotors);
+        m.insertRotors(new String[] { "R", "M0", "M1", "M2" });
+        m.setRotors(ByteAlphabet.fromHex("fe3ff0"));
+        m.setPlugboard(ByteAlphabet.permutation("(0041)(ff7f80)", alpha));
+        return m;
+    }
+
+    @Test
+    public void testHexNotation() {
+        assertEquals("\u0000\u00ffA", ByteAlphabet.fromHex("00fF41"));
+        Permutation p =
+            ByteAlphabet.permutation("(4142ff)(00)", new ByteAlphabet());
+        assertEquals(0x42, p.permute(0x41));
+        assertEquals(0x41, p.permute(0xff));
+        assertEquals(0xff, p.invert(0x41));
+        assertEquals(0, p.permute(0));
+        assertEquals(7, p.permute(7));
+        int[] perm = randomPerm(new Random(1), false);
+        p = ByteAlphabet.permutation(cycles(perm), new ByteAlphabet());
+        for (int b = 0; b < perm.length; b += 1) {
+            assertEquals(perm[b], p.permute(b));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadHex() {
+        ByteAlphabet.permutation("(41g2)", new ByteAlphabet());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRepeatedByte() {
+        ByteAlphabet.permutation("(4142)(0041)", new ByteAlphabet());
+    }
+
+    @Test
+    public void testBytesMatchIndices() {
+        byte[] data = new byte[100000];
+        new Random(2).nextBytes(data);
+        int[] indices = new int[data.length];
+        for (int x = 0; x < data.length; x += 1) {
+            indices[x] = data[x] & 0xff;
+        }
+        Machine bytes = byteMachine(3), ints = byteMachine(3);
+        bytes.convert(data, 0, 777);
+        bytes.convert(data, 777, data.length - 777);
+        ints.convert(indices, indices, 0, indices.length);
+        for (int x = 0; x < data.length; x += 1) {
+            assertEquals(indices[x], data[x] & 0xff);
+        }
+        assertArrayEquals(ints.positions(), bytes.positions());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        byte[] data = new byte[5000];
+        new Random(4).nextBytes(data);
+        byte[] copy = data.clone();
+        byteMachine(5).convert(copy, 0, copy.length);
+        byteMachine(5).convert(copy, 0, copy.length);
+        assertArrayEquals(data, copy);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNotBytes() {
+        MachTest.navalMachine("AXLE").convert(new byte[1], 0, 1);
+    }
+}
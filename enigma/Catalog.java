@@ -0,0 +1,258 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * Reads and writes compiled machine catalogs: binary files holding
+ * everything in a configuration file in ready-to-use form, so that a
+ * machine with a large catalog of rotors can be loaded without parsing.
+ * A catalog file consists of big-endian values:
+ *
+ *     MAGIC VERSION
+ *     alphabet kind (byte: RANGE, CHARS or BYTES), N, then N chars
+ *         (for RANGE, N is 2 and the chars are the first and last;
+ *         for BYTES, N is 0)
+ *     number of rotor slots, number of pawls, number of rotors
+ *     for each rotor:
+ *         kind (byte: 'M', 'N' or 'R'), name length, name chars,
+ *         forward table, inverse table (alphabet-size ints each),
+ *         for 'M' only, a notch mask of (size + 7) / 8 bytes, bit
+ *             K % 8 of byte K / 8 being set iff K is a notch.
+ *
+ * @author John Schulz
+ */
+class Catalog {
+
+    /** Not instantiable. */
+    private Catalog() {
+    }
+
+    /**
+     * Return true iff the file named NAME exists and starts with the
+     * header of a catalog of this version: MAGIC, VERSION, then an
+     * alphabet kind and a character count that fit the kind and the
+     * length of the file.  It should then be read as a catalog rather
+     * than as a configuration file.  A text configuration whose
+     * alphabet happens to start with the characters of MAGIC does not
+     * pass, since VERSION begins with zero bytes.
+     */
+    static boolean isCatalog(String name) {
+        try (FileChannel in =
+             FileChannel.open(Paths.get(name), StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+            while (head.hasRemaining() && in.read(head) > 0) {
+                continue;
+            }
+            if (head.hasRemaining() || head.getInt(0) != MAGIC
+                || head.getInt(Integer.BYTES) != VERSION) {
+                return false;
+            }
+            byte kind = head.get(2 * Integer.BYTES);
+            int len = head.getInt(2 * Integer.BYTES + 1);
+            switch (kind) {
+            case RANGE:
+                return len == 2;
+            case CHARS:
+                return len > 0
+                    && len <= (in.size() - HEADER_BYTES) / Character.BYTES;
+            case BYTES:
+                return len == 0;
+            default:
+                return false;
+            }
+        } catch (IOException | RuntimeException excp) {
+            return false;
+        }
+    }
+
+    /**
+     * Write the configuration of MACHINE (its alphabet, slot and pawl
+     * counts and catalog of rotors) to the file named NAME.
+     */
+    static void write(Machine machine, String name) {
+        Alphabet alpha = machine.alphabet();
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(name)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            if (alpha instanceof ByteAlphabet) {
+                out.writeByte(BYTES);
+                out.writeInt(0);
+            } else if (alpha instanceof CharacterRange) {
+                out.writeByte(RANGE);
+                out.writeInt(2);
+                out.writeChar(alpha.toChar(0));
+                out.writeChar(alpha.toChar(alpha.size() - 1));
+            } else {
+                out.writeByte(CHARS);
+                out.writeInt(alpha.size());
+                for (int x = 0; x < alpha.size(); x += 1) {
+                    out.writeChar(alpha.toChar(x));
+                }
+            }
+            out.writeInt(machine.numRotors());
+            out.writeInt(machine.numPawls());
+            out.writeInt(machine.getAllRotors().size());
+            for (Rotor rotor : machine.getAllRotors()) {
+                writeRotor(out, rotor);
+            }
+        } catch (IOException excp) {
+            throw error("could not write catalog %s: %s", name,
+                        excp.getMessage());
+        }
+    }
+
+    /** Write ROTOR to OUT. */
+    private static void writeRotor(DataOutputStream out, Rotor rotor)
+        throws IOException {
+        Permutation perm = rotor.permutation();
+        out.writeByte(rotor instanceof Reflector ? REFLECTOR
+                      : rotor instanceof MovingRotor ? MOVING : FIXED);
+        out.writeInt(rotor.name().length());
+        out.writeChars(rotor.name());
+        for (int x = 0; x < perm.size(); x += 1) {
+            out.writeInt(perm.permute(x));
+        }
+        for (int x = 0; x < perm.size(); x += 1) {
+            out.writeInt(perm.invert(x));
+        }
+        if (rotor instanceof MovingRotor) {
+            boolean[] notches = ((MovingRotor) rotor).notchMask();
+            byte[] bits = new byte[(notches.length + BYTE_BITS - 1)
+                                   / BYTE_BITS];
+            for (int k = 0; k < notches.length; k += 1) {
+                if (notches[k]) {
+                    bits[k / BYTE_BITS] |= 1 << (k % BYTE_BITS);
+                }
+            }
+            out.write(bits);
+        }
+    }
+
+    /**
+     * Return a machine configured from the catalog in the file named
+     * NAME, which is mapped and decoded in place.
+     */
+    static Machine read(String name) {
+        try (FileChannel in =
+             FileChannel.open(Paths.get(name), StandardOpenOption.READ)) {
+            ByteBuffer buf =
+                in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw error("%s is not a catalog of this version", name);
+            }
+            Alphabet alpha = readAlphabet(buf);
+            int numRotors = buf.getInt();
+            int numPawls = buf.getInt();
+            int count = buf.getInt();
+            if (numRotors < 1 || numPawls < 0 || numPawls >= numRotors
+                || count < 0) {
+                throw error("bad machine description in catalog %s", name);
+            }
+            ArrayList<Rotor> rotors = new ArrayList<>(count);
+            for (int x = 0; x < count; x += 1) {
+                rotors.add(readRotor(buf, alpha));
+            }
+            if (buf.hasRemaining()) {
+                throw error("extra data at end of catalog %s", name);
+            }
+            return new Machine(alpha, numRotors, numPawls, rotors);
+        } catch (BufferUnderflowException excp) {
+            throw error("catalog %s truncated", name);
+        } catch (IOException excp) {
+            throw error("could not read catalog %s", name);
+        }
+    }
+
+    /** Return the alphabet described at the current position of BUF. */
+    private static Alphabet readAlphabet(ByteBuffer buf) {
+        byte kind = buf.get();
+        String chars = readChars(buf);
+        if (kind == RANGE && chars.length() == 2) {
+            return new CharacterRange(chars.charAt(0), chars.charAt(1));
+        } else if (kind == CHARS) {
+            return new Characters(chars);
+        } else if (kind == BYTES && chars.isEmpty()) {
+            return new ByteAlphabet();
+        }
+        throw error("bad alphabet in catalog");
+    }
+
+    /** Return the rotor with alphabet ALPHA described at the current
+     *  position of BUF. */
+    private static Rotor readRotor(ByteBuffer buf, Alphabet alpha) {
+        byte kind = buf.get();
+        String name = readChars(buf);
+        int[] forward = new int[alpha.size()];
+        int[] inverse = new int[alpha.size()];
+        buf.asIntBuffer().get(forward);
+        buf.position(buf.position() + forward.length * Integer.BYTES);
+        buf.asIntBuffer().get(inverse);
+        buf.position(buf.position() + inverse.length * Integer.BYTES);
+        Permutation perm = new Permutation(forward, inverse, alpha);
+        switch (kind) {
+        case MOVING:
+            StringBuilder notches = new StringBuilder();
+            byte[] bits = new byte[(alpha.size() + BYTE_BITS - 1)
+                                   / BYTE_BITS];
+            buf.get(bits);
+            for (int k = 0; k < alpha.size(); k += 1) {
+                if ((bits[k / BYTE_BITS] & (1 << (k % BYTE_BITS))) != 0) {
+                    notches.append(alpha.toChar(k));
+                }
+            }
+            return new MovingRotor(name, perm, notches.toString());
+        case REFLECTOR:
+            return new Reflector(name, perm);
+        case FIXED:
+            return new Rotor(name, perm);
+        default:
+            throw error("bad rotor kind in catalog");
+        }
+    }
+
+    /** Return the string of chars, preceded by its length, at the
+     *  current position of BUF. */
+    private static String readChars(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0 || len > buf.remaining() / Character.BYTES) {
+            throw new BufferUnderflowException();
+        }
+        char[] chars = new char[len];
+        buf.asCharBuffer().get(chars);
+        buf.position(buf.position() + len * Character.BYTES);
+        return new String(chars);
+    }
+
+    /** First int of every catalog file ("ENGC"). */
+    static final int MAGIC = 0x454E4743;
+
+    /** Version of the catalog format. */
+    static final int VERSION = 1;
+
+    /** Length of the header checked by isCatalog: MAGIC, VERSION, the
+     *  alphabet kind and its character count. */
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + 1;
+
+    /** Alphabet kinds: a CharacterRange, a list of Characters, or the
+     *  ByteAlphabet. */
+    private static final byte RANGE = 0, CHARS = 1, BYTES = 2;
+
+    /** Rotor kinds, as in the configuration file. */
+    private static final byte MOVING = 'M', FIXED = 'N', REFLECTOR = 'R';
+
+    /** Number of bits in a byte. */
+    private static final int BYTE_BITS = 8;
+}
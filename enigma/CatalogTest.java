@@ -0,0 +1,143 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests of writing and reading compiled catalogs.
+ *  @author John Schulz
+ */
+public class CatalogTest {
+
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return the name of a new temporary file containing DATA. */
+    private static String file(byte[] data) throws IOException {
+        Path path = Files.createTempFile("enigma", ".tmp");
+        path.toFile().deleteOnExit();
+        Files.write(path, data);
+        return path.toString();
+    }
+
+    /** Return the name of a new temporary file containing TEXT. */
+    private static String file(String text) throws IOException {
+        return file(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Return the contents of the file named NAME. */
+    private static byte[] contents(String name) throws IOException {
+        return Files.readAllBytes(Path.of(name));
+    }
+
+    /** Run Main with arguments ARGS. */
+    private static void run(String... args) {
+        new Main(args).process();
+    }
+
+    /** Return the name of a new catalog compiled from the configuration
+     *  file named CONFIG. */
+    private static String compile(String config) throws IOException {
+        String catalog = file(new byte[0]);
+        run("--compile=" + catalog, config);
+        return catalog;
+    }
+
+    /** Return a configuration of the naval rotors. */
+    private static String navalConfig() {
+        StringBuilder result = new StringBuilder("A-Z\n 5 3\n");
+        String[][] rotors = {
+            { "I", "MQ" }, { "II", "ME" }, { "III", "MV" }, { "IV", "MJ" },
+            { "V", "MZ" }, { "VI", "MZM" }, { "Beta", "N" },
+            { "Gamma", "N" }, { "B", "R" }, { "C", "R" },
+        };
+        for (String[] rotor : rotors) {
+            result.append(String.format(" %s %s %s%n", rotor[0], rotor[1],
+                                        TestUtils.NAVALA.get(rotor[0])));
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        String config = file(navalConfig());
+        String catalog = compile(config);
+        assertTrue(Catalog.isCatalog(catalog));
+        assertFalse(Catalog.isCatalog(config));
+
+        Machine mach = Catalog.read(catalog);
+        assertEquals(5, mach.numRotors());
+        assertEquals(3, mach.numPawls());
+        assertEquals(10, mach.getAllRotors().size());
+        Rotor six = mach.getAllRotors().stream()
+            .filter(r -> r.name().equals("VI")).findFirst().get();
+        assertTrue(six instanceof MovingRotor);
+        boolean[] notches = ((MovingRotor) six).notchMask();
+        for (int k = 0; k < notches.length; k += 1) {
+            assertEquals(k == 'M' - 'A' || k == 'Z' - 'A', notches[k]);
+        }
+
+        String input = file("* B BETA I II III AAAA\nHello world\n"
+                            + "* C GAMMA VI V IV QZMA (AB) (YZ)\n"
+                            + "FROM HIS SHOULDER HIAWATHA\n"
+                            + "TOOK THE CAMERA OF ROSEWOOD\n");
+        String fromConfig = file(new byte[0]), fromCatalog = file(new byte[0]);
+        run(config, input, fromConfig);
+        run(catalog, input, fromCatalog);
+        assertTrue(new String(contents(fromConfig), StandardCharsets.UTF_8)
+                   .startsWith("ILBDA AMTAZ"));
+        assertArrayEquals(contents(fromConfig), contents(fromCatalog));
+    }
+
+    @Test
+    public void testBytes() throws IOException {
+        String config = file("0x00-0xff\n 4 3\n"
+                             + " R R (0001)(0203)(fe7f)\n"
+                             + " A M00 (000102)(feff)\n"
+                             + " B M10 (0a0b0c0d)\n"
+                             + " C M7f (00ff)(1234)\n");
+        String catalog = compile(config);
+        assertTrue(Catalog.isCatalog(catalog));
+        assertTrue(Catalog.read(catalog).alphabet() instanceof ByteAlphabet);
+
+        byte[] data = new byte[10000];
+        new Random(11).nextBytes(data);
+        String input = file(data);
+        String fromConfig = file(new byte[0]), fromCatalog = file(new byte[0]);
+        String key = "--key=* R A B C 0a0b0c (0041)";
+        run("--binary", key, config, input, fromConfig);
+        run("--binary", key, catalog, input, fromCatalog);
+        assertFalse(Arrays.equals(data, contents(fromConfig)));
+        assertArrayEquals(contents(fromConfig), contents(fromCatalog));
+    }
+
+    @Test
+    public void testNotCatalog() throws IOException {
+        String config = file("ENGCAB\n 2 1\n R R (EN)(GC)(AB)\n"
+                             + " X MA (ENG)(CAB)\n");
+        assertFalse(Catalog.isCatalog(config));
+        String output = file(new byte[0]);
+        run(config, file("* R X E\nENGCAB\n"), output);
+        assertTrue(new String(contents(output), StandardCharsets.UTF_8)
+                   .trim().matches("[ENGCAB]{5} [ENGCAB]"));
+
+        byte[] whole = contents(compile(file(navalConfig())));
+        assertFalse(Catalog.isCatalog(file(Arrays.copyOf(whole, 12))));
+        byte[] otherVersion = whole.clone();
+        otherVersion[Integer.BYTES + 3] += 1;
+        assertFalse(Catalog.isCatalog(file(otherVersion)));
+        assertFalse(Catalog.isCatalog(file(new byte[0])));
+    }
+}
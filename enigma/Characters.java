@@ -1,5 +1,7 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.error;
 /**
  * An alphabet created through a String
@@ -15,38 +17,63 @@ public class Characters extends Alphabet {
     public String getAll() {
         return _all;
     }
-    /** The characters and their respective integer values stored in an array.*/
-    private Alpha[] _cycling;
-    /** Returns the array cycling. */
-    public Alpha[] getCycling() {
-        return _cycling;
-    }
+    /** The characters of the alphabet, indexed by their integer values. */
+    private final char[] _chars;
     /**
      * An alphabet consisting of all characters in CHARS
      * inclusive.
      */
     Characters(String chars) {
         _all = chars;
-        _cycling = new Alpha[chars.length()];
-        for (int x = 0; x < chars.length(); x += 1) {
-            _cycling[x] = new Alpha(chars.charAt(x), x);
+        _chars = chars.toCharArray();
+        if (_chars.length == 0) {
+            throw error("empty alphabet");
+        }
+        char lo = _chars[0], hi = _chars[0];
+        for (char ch : _chars) {
+            lo = (char) Math.min(lo, ch);
+            hi = (char) Math.max(hi, ch);
+        }
+        if (hi - lo + 1 <= DENSE_RATIO * _chars.length + DENSE_SLACK) {
+            _first = lo;
+            _dense = new int[hi - lo + 1];
+            Arrays.fill(_dense, -1);
+            _slots = null;
+            for (int x = 0; x < _chars.length; x += 1) {
+                if (_dense[_chars[x] - _first] != -1) {
+                    throw error("character '%c' repeated in alphabet",
+                                _chars[x]);
+                }
+                _dense[_chars[x] - _first] = x;
+            }
+        } else {
+            _first = 0;
+            _dense = null;
+            int cap = Integer.highestOneBit(_chars.length) * 4;
+            _slots = new int[cap];
+            for (int x = 0; x < _chars.length; x += 1) {
+                int h = hash(_chars[x]);
+                while (_slots[h] != 0) {
+                    if (_chars[_slots[h] - 1] == _chars[x]) {
+                        throw error("character '%c' repeated in alphabet",
+                                    _chars[x]);
+                    }
+                    h = (h + 1) & (cap - 1);
+                }
+                _slots[h] = x + 1;
+            }
         }
     }
 
 
     @Override
     int size() {
-        return _all.length();
+        return _chars.length;
     }
 
     @Override
     boolean contains(char ch) {
-        for (int x = 0; x < size(); x += 1) {
-            if (_cycling[x]._letter == ch) {
-                return true;
-            }
-        }
-        return false;
+        return lookup(ch) >= 0;
     }
 
     @Override
@@ -54,63 +81,61 @@ public class Characters extends Alphabet {
         if (index < 0 || index >= size()) {
             throw error("character index out of range");
         }
-        return _cycling[index]._letter;
+        return _chars[index];
     }
 
     @Override
     int toInt(char ch) {
-        if (!contains(ch)) {
+        int ret = lookup(ch);
+        if (ret < 0) {
             throw error("character out of range");
         }
-        int ret = 0;
-        for (int x = 0; x < size(); x += 1) {
-            if (_cycling[x]._letter == ch) {
-                ret = x;
+        return ret;
+    }
+
+    /** Return the index of CH in this alphabet, or -1 if it is not
+     *  present. */
+    private int lookup(char ch) {
+        if (_dense != null) {
+            int i = ch - _first;
+            return i >= 0 && i < _dense.length ? _dense[i] : -1;
+        }
+        int mask = _slots.length - 1;
+        for (int h = hash(ch); _slots[h] != 0; h = (h + 1) & mask) {
+            if (_chars[_slots[h] - 1] == ch) {
+                return _slots[h] - 1;
             }
         }
-        return ret;
+        return -1;
+    }
+
+    /** Return the home slot of CH in _slots. */
+    private int hash(char ch) {
+        return ((ch * HASH_MULTIPLIER) >>> HASH_SHIFT) & (_slots.length - 1);
     }
 
     /**
-     * Range of characters in this Alphabet.
+     * The smallest character in this Alphabet, when _dense is used.
      */
-    private char _first, _last;
+    private final char _first;
     /**
-     * Class to initialize permutations and rotor elements.
+     * Direct table for compact alphabets: _dense[CH - _first] is the
+     * index of CH, or -1 if CH is not in the alphabet.  Null when the
+     * characters are too spread out, in which case _slots is used.
      */
-    public static class Alpha {
-        /**
-         * the Value represented as a char.
-         */
-        private int _value;
-        /**
-         * the next and previous day.
-         */
-        private char _letter;
-
-        /**
-         * Gets the value of the instance. @return the value
-         */
-        public int getValue() {
-            return _value;
-        }
-
-        /**
-         * Gets the next cycle of the instance. @return the next cycle
-         */
-        public char getNext() {
-            return _letter;
-        }
-
-
-        /**
-         * Another initializer for Cycle with VALUE and LETTER.
-         */
-        Alpha(char letter, int value) {
-            _value = value;
-            _letter = letter;
-        }
-    }
+    private final int[] _dense;
+    /**
+     * Open-addressed (linear probing) hash table for sparse alphabets.
+     * Each slot holds 1 + the index of a character, or 0 if empty.  Its
+     * length is a power of two at least twice size().
+     */
+    private final int[] _slots;
 
+    /** A dense table is used when the characters span no more than
+     *  DENSE_RATIO * size() + DENSE_SLACK code points. */
+    private static final int DENSE_RATIO = 4, DENSE_SLACK = 256;
+    /** Fibonacci hashing multiplier for _slots. */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+    /** Shift applied after multiplying by HASH_MULTIPLIER. */
+    private static final int HASH_SHIFT = 16;
 }
-
@@ -0,0 +1,51 @@
+package enigma;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Characters class.
+ *  @author John Schulz
+ */
+public class CharactersTest {
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Check that ALPHA maps each character of CHARS to its index and
+     *  back, and rejects the characters in MISSING. */
+    private void checkAlphabet(Alphabet alpha, String chars,
+                               String missing) {
+        assertEquals(chars.length(), alpha.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            assertTrue(alpha.contains(chars.charAt(i)));
+            assertEquals(i, alpha.toInt(chars.charAt(i)));
+            assertEquals(chars.charAt(i), alpha.toChar(i));
+        }
+        for (int i = 0; i < missing.length(); i += 1) {
+            assertFalse(alpha.contains(missing.charAt(i)));
+        }
+    }
+
+    @Test
+    public void testCompact() {
+        String chars = "NOPQRSTUVWXYZABCDEFGHIJKLM";
+        checkAlphabet(new Characters(chars), chars, "az0 ");
+    }
+
+    @Test
+    public void testSparse() {
+        String chars = "A\u00e9\u4e2d\u2603z\uffee";
+        checkAlphabet(new Characters(chars), chars, "BCy\u4e2e\u0000");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRepeated() {
+        new Characters("ABCA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNotPresent() {
+        new Characters("A\u4e2d").toInt('B');
+    }
+}
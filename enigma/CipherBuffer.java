@@ -0,0 +1,117 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The buffering shared by the stream adapters (EnigmaReader and friends).
+ * Characters are added one at a time: those in the machine's alphabet
+ * (directly or when upper-cased) are queued as alphabet indices and the
+ * rest are dropped.  convert() runs the queue through the machine in
+ * one call and appends the results to an output buffer, with a space
+ * between groups of a fixed size if grouping was requested, from which
+ * they are then taken.  The machine keeps its rotor state from one
+ * conversion to the next, and nothing is allocated after construction.
+ *
+ * @author John Schulz
+ */
+class CipherBuffer {
+
+    /**
+     * A buffer converting with MACHINE, whose rotors, settings and
+     * plugboard must be set, and separating its output into groups of
+     * GROUP characters (or not at all if GROUP is 0).
+     */
+    CipherBuffer(Machine machine, int group) {
+        if (group < 0) {
+            throw new IllegalArgumentException("negative group size");
+        }
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _group = group;
+        _codes = new int[CAPACITY];
+        _out = new char[group == 0 ? CAPACITY : CAPACITY * 2 + 1];
+    }
+
+    /**
+     * Queue CH for conversion if it belongs to the alphabet, and return
+     * true iff the queue is now full, so that convert() must be called
+     * before more characters are added.
+     */
+    boolean add(char ch) {
+        if (!_alphabet.contains(ch)) {
+            ch = Character.toUpperCase(ch);
+            if (!_alphabet.contains(ch)) {
+                return false;
+            }
+        }
+        _codes[_numCodes] = _alphabet.toInt(ch);
+        _numCodes += 1;
+        return _numCodes == _codes.length;
+    }
+
+    /**
+     * Convert the queued characters and append them to the output,
+     * which must first have been emptied by take.
+     */
+    void convert() {
+        _machine.convert(_codes, _codes, 0, _numCodes);
+        int n = 0;
+        for (int x = 0; x < _numCodes; x += 1) {
+            if (_inGroup == _group && _group > 0) {
+                _out[n] = ' ';
+                n += 1;
+                _inGroup = 0;
+            }
+            _out[n] = _alphabet.toChar(_codes[x]);
+            n += 1;
+            _inGroup += 1;
+        }
+        _numCodes = 0;
+        _outStart = 0;
+        _outEnd = n;
+    }
+
+    /** Return the number of converted characters waiting to be taken. */
+    int available() {
+        return _outEnd - _outStart;
+    }
+
+    /**
+     * Move up to LEN converted characters into BUF[OFF ..], returning
+     * the number moved.
+     */
+    int take(char[] buf, int off, int len) {
+        int n = Math.min(len, available());
+        System.arraycopy(_out, _outStart, buf, off, n);
+        _outStart += n;
+        return n;
+    }
+
+    /** Write all the converted characters not yet taken to OUT. */
+    void writeTo(Writer out) throws IOException {
+        out.write(_out, _outStart, available());
+        _outStart = _outEnd;
+    }
+
+    /** Largest number of characters queued for conversion at once. */
+    static final int CAPACITY = 1 << 12;
+
+    /** The machine that converts. */
+    private final Machine _machine;
+    /** Its alphabet. */
+    private final Alphabet _alphabet;
+    /** Size of an output group, or 0 for no grouping. */
+    private final int _group;
+    /** Alphabet indices of the queued characters. */
+    private final int[] _codes;
+    /** Number of queued characters. */
+    private int _numCodes;
+    /** Converted output, of which _out[_outStart .. _outEnd - 1] has not
+     *  been taken. */
+    private final char[] _out;
+    /** Bounds of the untaken output in _out. */
+    private int _outStart, _outEnd;
+    /** Number of characters output in the current group. */
+    private int _inGroup;
+}
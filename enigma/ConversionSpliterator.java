@@ -0,0 +1,113 @@
+package enigma;
+
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A Spliterator over the conversion of a message (as alphabet indices).
+ * Splitting is possible because the rotor positions at each offset
+ * depend only on the starting setting and the offset: each part gets its
+ * own copy of the starting machine, advanced to the part's first offset
+ * when traversal begins.
+ *
+ * @author John Schulz
+ */
+class ConversionSpliterator implements Spliterator.OfInt {
+
+    /**
+     * A Spliterator over the conversions of MSG[LO .. HI - 1], where
+     * BASE is a machine positioned to convert MSG[LO].  BASE is only
+     * copied, never modified.
+     */
+    ConversionSpliterator(Machine base, int[] msg, int lo, int hi) {
+        this(base, lo, msg, lo, hi);
+    }
+
+    /**
+     * A Spliterator over the conversions of MSG[LO .. HI - 1], where
+     * BASE is a machine positioned to convert MSG[ORIGIN].
+     */
+    private ConversionSpliterator(Machine base, int origin, int[] msg,
+                                  int lo, int hi) {
+        _base = base;
+        _origin = origin;
+        _msg = msg;
+        _lo = lo;
+        _hi = hi;
+    }
+
+    /** Return the machine positioned at _lo, creating it if needed. */
+    private Machine machine() {
+        if (_machine == null) {
+            _machine = _base.copy();
+            _machine.advanceBy(_lo - _origin);
+        }
+        return _machine;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        if (_lo >= _hi) {
+            return false;
+        }
+        action.accept(machine().convert(_msg[_lo]));
+        _lo += 1;
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        if (_lo >= _hi) {
+            return;
+        }
+        Machine m = machine();
+        int[] buf = new int[Math.min(BLOCK_SIZE, _hi - _lo)];
+        while (_lo < _hi) {
+            int n = Math.min(buf.length, _hi - _lo);
+            System.arraycopy(_msg, _lo, buf, 0, n);
+            m.convert(buf, buf, 0, n);
+            _lo += n;
+            for (int x = 0; x < n; x += 1) {
+                action.accept(buf[x]);
+            }
+        }
+    }
+
+    @Override
+    public Spliterator.OfInt trySplit() {
+        if (_machine != null || _hi - _lo < 2 * MIN_SPLIT) {
+            return null;
+        }
+        int mid = (_lo + _hi) >>> 1;
+        Spliterator.OfInt prefix =
+            new ConversionSpliterator(_base, _origin, _msg, _lo, mid);
+        _lo = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return _hi - _lo;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+    }
+
+    /** Smallest part produced by trySplit. */
+    static final int MIN_SPLIT = 1 << 14;
+    /** Number of characters converted at a time by forEachRemaining. */
+    private static final int BLOCK_SIZE = 1 << 12;
+
+    /** Machine positioned at _origin. */
+    private final Machine _base;
+    /** Offset at which _base is positioned. */
+    private final int _origin;
+    /** The message being converted. */
+    private final int[] _msg;
+    /** Bounds of the part remaining to be traversed. */
+    private int _lo, _hi;
+    /** Machine positioned at _lo once traversal has begun, else null. */
+    private Machine _machine;
+}
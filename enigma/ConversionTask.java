@@ -0,0 +1,59 @@
+package enigma;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fork/join task that converts a range of a message.  Because the
+ * rotor positions at any offset of a message depend only on the starting
+ * setting and the offset, each piece can be converted independently by
+ * a copy of the starting machine advanced to the start of the piece.
+ *
+ * @author John Schulz
+ */
+class ConversionTask extends RecursiveAction {
+
+    /**
+     * A task converting IN[LO .. HI - 1] into the corresponding elements
+     * of OUT, where BASE is a machine positioned to convert IN[ORIGIN].
+     * BASE is only copied, never modified.
+     */
+    ConversionTask(Machine base, int[] in, int[] out, int origin,
+                   int lo, int hi) {
+        _base = base;
+        _in = in;
+        _out = out;
+        _origin = origin;
+        _lo = lo;
+        _hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+        if (_hi - _lo <= CHUNK_SIZE) {
+            Machine m = _base.copy();
+            m.advanceBy(_lo - _origin);
+            m.convert(_in, _out, _lo, _hi - _lo);
+        } else {
+            int mid = (_lo + _hi) >>> 1;
+            invokeAll(new ConversionTask(_base, _in, _out, _origin,
+                                         _lo, mid),
+                      new ConversionTask(_base, _in, _out, _origin,
+                                         mid, _hi));
+        }
+    }
+
+    /** Largest range converted without further splitting. */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /** Machine positioned at _origin. */
+    private final Machine _base;
+    /** Source and destination of the conversion. */
+    private final int[] _in, _out;
+    /** Offset at which _base is positioned. */
+    private final int _origin;
+    /** Bounds of the range I convert. */
+    private final int _lo, _hi;
+
+    /** Serialization version (tasks are never serialized). */
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,101 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * An InputStream that reads the characters of another InputStream in a
+ * given character set, converts them as an EnigmaReader does, and
+ * delivers the result encoded in the same character set.
+ *
+ * @author John Schulz
+ */
+class EnigmaInputStream extends InputStream {
+
+    /**
+     * A stream converting with MACHINE, which must be set up, the
+     * characters of IN in character set CHARSET, in groups of GROUP
+     * characters (no groups if GROUP is 0).
+     */
+    EnigmaInputStream(InputStream in, Charset charset, Machine machine,
+                      int group) {
+        _reader = new EnigmaReader(new InputStreamReader(in, charset),
+                                   machine, group);
+        _encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        int maxBytes = (int) Math.ceil(_encoder.maxBytesPerChar());
+        _chars = CharBuffer.allocate(CipherBuffer.CAPACITY);
+        _bytes = ByteBuffer.allocate(CipherBuffer.CAPACITY * maxBytes);
+        _bytes.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return _bytes.get() & BYTE_MASK;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, _bytes.remaining());
+        _bytes.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return _bytes.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _reader.close();
+    }
+
+    /**
+     * Make sure that _bytes has bytes to deliver, if there are any more,
+     * returning false iff there are none.
+     */
+    private boolean fill() throws IOException {
+        while (!_bytes.hasRemaining()) {
+            _chars.clear();
+            int n = _reader.read(_chars.array(), 0, _chars.capacity());
+            if (n == -1) {
+                return false;
+            }
+            _chars.limit(n);
+            _bytes.clear();
+            _encoder.encode(_chars, _bytes, false);
+            _bytes.flip();
+        }
+        return true;
+    }
+
+    /** Mask selecting the low byte of an int. */
+    private static final int BYTE_MASK = 0xFF;
+
+    /** Reads and converts the characters. */
+    private final EnigmaReader _reader;
+    /** Encodes the converted characters. */
+    private final CharsetEncoder _encoder;
+    /** Converted characters being encoded. */
+    private final CharBuffer _chars;
+    /** Encoded characters, of which those from the position to the limit
+     *  have not been delivered. */
+    private final ByteBuffer _bytes;
+}
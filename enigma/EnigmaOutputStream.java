@@ -0,0 +1,123 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * An OutputStream that decodes the bytes written to it in a given
+ * character set, converts the characters as an EnigmaWriter does, and
+ * writes the result, encoded in the same character set, to another
+ * OutputStream.  A character whose bytes are split between writes is
+ * decoded once its last byte arrives; malformed bytes are dropped.
+ *
+ * @author John Schulz
+ */
+class EnigmaOutputStream extends OutputStream {
+
+    /**
+     * A stream converting with MACHINE, which must be set up, the
+     * characters written to it in character set CHARSET, and writing
+     * them to OUT in groups of GROUP characters (no groups if GROUP is
+     * 0).
+     */
+    EnigmaOutputStream(OutputStream out, Charset charset, Machine machine,
+                       int group) {
+        _writer = new EnigmaWriter(new OutputStreamWriter(out, charset),
+                                   machine, group);
+        _decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _bytes = ByteBuffer.allocate(CipherBuffer.CAPACITY);
+        _chars = CharBuffer.allocate(CipherBuffer.CAPACITY);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkOpen();
+        if (!_bytes.hasRemaining()) {
+            decode(false);
+        }
+        _bytes.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkOpen();
+        while (len > 0) {
+            if (!_bytes.hasRemaining()) {
+                decode(false);
+            }
+            int n = Math.min(len, _bytes.remaining());
+            _bytes.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        decode(false);
+        _writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        try {
+            decode(true);
+            _decoder.flush(_chars);
+            writeChars();
+        } finally {
+            _writer.close();
+        }
+    }
+
+    /**
+     * Decode the buffered bytes and pass the characters to _writer,
+     * keeping the bytes of an incomplete character unless END, which
+     * indicates that no more bytes will follow.
+     */
+    private void decode(boolean end) throws IOException {
+        _bytes.flip();
+        while (_decoder.decode(_bytes, _chars, end).isOverflow()) {
+            writeChars();
+        }
+        writeChars();
+        _bytes.compact();
+    }
+
+    /** Pass the decoded characters in _chars to _writer. */
+    private void writeChars() throws IOException {
+        _chars.flip();
+        _writer.write(_chars.array(), _chars.position(), _chars.remaining());
+        _chars.clear();
+    }
+
+    /** Throw an IOException if I have been closed. */
+    private void checkOpen() throws IOException {
+        if (_closed) {
+            throw new IOException("stream closed");
+        }
+    }
+
+    /** Converts the decoded characters and writes them out. */
+    private final EnigmaWriter _writer;
+    /** Decodes the bytes written to me. */
+    private final CharsetDecoder _decoder;
+    /** Bytes written to me and not yet decoded. */
+    private final ByteBuffer _bytes;
+    /** Decoded characters. */
+    private final CharBuffer _chars;
+    /** True iff I have been closed. */
+    private boolean _closed;
+}
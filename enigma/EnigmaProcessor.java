@@ -0,0 +1,280 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Flow.Processor that converts the usual input of Main (settings
+ * lines and messages) arriving as chunks of text, split anywhere, and
+ * publishes the converted output in chunks to a single subscriber.
+ * Each chunk is run through a MessageProcessor, so the machine converts
+ * whole buffers and keeps its state from chunk to chunk, and the output
+ * of the lines completed so far is published as one item.
+ *
+ * <p>Back-pressure is driven by demand, and no callback ever blocks: an
+ * upstream item is requested only while the subscriber has outstanding
+ * demand and no output is waiting, so at most the output of one chunk
+ * (and that of the end of input) is ever buffered.  Deliveries to the
+ * subscriber, and requests upstream, are made by a drain task run on an
+ * Executor, one at a time; any executor, even a single thread, will do.
+ *
+ * @author John Schulz
+ */
+class EnigmaProcessor implements Flow.Processor<String, String> {
+
+    /**
+     * A processor converting with MACHINE, delivering to its subscriber
+     * through EXECUTOR.
+     */
+    EnigmaProcessor(Machine machine, Executor executor) {
+        _executor = executor;
+        _text = new StringWriter();
+        _processor = new MessageProcessor(machine, machine.alphabet(),
+                                          _text);
+    }
+
+    /**
+     * A processor converting with MACHINE, delivering to its subscriber
+     * in the common pool.
+     */
+    EnigmaProcessor(Machine machine) {
+        this(machine, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        boolean first;
+        synchronized (this) {
+            first = _subscriber == null;
+            if (first) {
+                _subscriber = subscriber;
+            }
+        }
+        if (first) {
+            subscriber.onSubscribe(new Downstream());
+            schedule();
+        } else {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException(
+                "EnigmaProcessor allows only one subscriber"));
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (_upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            _upstream = subscription;
+        }
+        schedule();
+    }
+
+    @Override
+    public void onNext(String chunk) {
+        String output;
+        try {
+            for (int x = 0; x < chunk.length(); x += 1) {
+                _processor.feed(chunk.charAt(x));
+            }
+            _processor.flush();
+            output = takeText();
+        } catch (IOException | EnigmaException excp) {
+            _upstream.cancel();
+            fail(excp);
+            return;
+        }
+        synchronized (this) {
+            _requested = false;
+            if (!output.isEmpty()) {
+                _pending.add(output);
+            }
+        }
+        schedule();
+    }
+
+    @Override
+    public void onError(Throwable excp) {
+        fail(excp);
+    }
+
+    @Override
+    public void onComplete() {
+        String output;
+        try {
+            _processor.finish();
+            output = takeText();
+        } catch (IOException | EnigmaException excp) {
+            fail(excp);
+            return;
+        }
+        synchronized (this) {
+            if (!output.isEmpty()) {
+                _pending.add(output);
+            }
+            _done = true;
+        }
+        schedule();
+    }
+
+    /** Return and clear the output accumulated in _text. */
+    private String takeText() {
+        StringBuffer text = _text.getBuffer();
+        String result = text.toString();
+        text.setLength(0);
+        return result;
+    }
+
+    /** Record EXCP as the end of my output, after any pending items. */
+    private void fail(Throwable excp) {
+        synchronized (this) {
+            if (_error == null) {
+                _error = excp;
+            }
+            _done = true;
+        }
+        schedule();
+    }
+
+    /**
+     * Arrange for drain to run on _executor, unless it is running or
+     * already scheduled, in which case it will run once more.
+     */
+    private void schedule() {
+        if (_work.getAndIncrement() == 0) {
+            _executor.execute(this::drain);
+        }
+    }
+
+    /** Run drainOnce until no more work has been scheduled. */
+    private void drain() {
+        int missed = 1;
+        do {
+            drainOnce();
+            missed = _work.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Deliver pending items while the subscriber wants them, then
+     * either signal the end of output, if it has been reached, or
+     * request the next upstream item if there is demand for its output.
+     */
+    private void drainOnce() {
+        Flow.Subscriber<? super String> subscriber;
+        Flow.Subscription upstream = null;
+        while (true) {
+            String item;
+            synchronized (this) {
+                subscriber = _subscriber;
+                if (subscriber == null || _cancelled || _finished) {
+                    return;
+                }
+                if (_pending.isEmpty() || _demand == 0) {
+                    break;
+                }
+                item = _pending.remove();
+                _demand -= 1;
+            }
+            subscriber.onNext(item);
+        }
+        boolean finish;
+        Throwable error;
+        synchronized (this) {
+            if (!_pending.isEmpty()) {
+                return;
+            }
+            finish = _finished = _done;
+            error = _error;
+            if (!_done && _demand > 0 && !_requested && _upstream != null) {
+                _requested = true;
+                upstream = _upstream;
+            }
+        }
+        if (finish) {
+            if (error == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(error);
+            }
+        } else if (upstream != null) {
+            upstream.request(1);
+        }
+    }
+
+    /** The subscription given to my subscriber. */
+    private class Downstream implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            synchronized (EnigmaProcessor.this) {
+                if (n <= 0) {
+                    if (_error == null) {
+                        _error = new IllegalArgumentException(
+                            "non-positive request: " + n);
+                    }
+                    _done = true;
+                    _pending.clear();
+                } else {
+                    _demand = _demand + n < 0 ? Long.MAX_VALUE
+                        : _demand + n;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription upstream;
+            synchronized (EnigmaProcessor.this) {
+                _cancelled = true;
+                _pending.clear();
+                upstream = _upstream;
+            }
+            if (upstream != null) {
+                upstream.cancel();
+            }
+        }
+    }
+
+    /** Converts the chunks. */
+    private final MessageProcessor _processor;
+    /** Output of _processor not yet taken. */
+    private final StringWriter _text;
+    /** Runs drain. */
+    private final Executor _executor;
+    /** Number of times drain has been scheduled and not yet run. */
+    private final AtomicInteger _work = new AtomicInteger();
+    /** Converted output not yet delivered. */
+    private final ArrayDeque<String> _pending = new ArrayDeque<>();
+    /** Upstream subscription, or null. */
+    private Flow.Subscription _upstream;
+    /** My subscriber, or null. */
+    private Flow.Subscriber<? super String> _subscriber;
+    /** Items requested by _subscriber and not yet delivered. */
+    private long _demand;
+    /** True iff an upstream item has been requested and not received. */
+    private boolean _requested;
+    /** True iff no more output will be added to _pending. */
+    private boolean _done;
+    /** The error ending my output, or null. */
+    private Throwable _error;
+    /** True iff _subscriber has been sent onComplete or onError. */
+    private boolean _finished;
+    /** True iff _subscriber has cancelled. */
+    private boolean _cancelled;
+}
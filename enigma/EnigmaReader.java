@@ -0,0 +1,91 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A Reader that reads characters from another Reader and delivers them
+ * converted by a Machine.  Characters outside the machine's alphabet
+ * (even when upper-cased) are dropped, and the output may be separated
+ * into groups, as by CipherBuffer.  The machine's rotors advance with
+ * each character delivered or buffered for delivery.
+ *
+ * @author John Schulz
+ */
+class EnigmaReader extends Reader {
+
+    /**
+     * A reader converting the characters of IN with MACHINE, which must
+     * be set up, in groups of GROUP characters (no groups if GROUP is 0).
+     */
+    EnigmaReader(Reader in, Machine machine, int group) {
+        _in = in;
+        _buffer = new CipherBuffer(machine, group);
+        _raw = new char[CipherBuffer.CAPACITY];
+    }
+
+    /** A reader converting the characters of IN with MACHINE, which must
+     *  be set up, without grouping. */
+    EnigmaReader(Reader in, Machine machine) {
+        this(in, machine, 0);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        checkOpen();
+        if (len == 0) {
+            return 0;
+        }
+        while (_buffer.available() == 0) {
+            if (!fill()) {
+                return -1;
+            }
+        }
+        return _buffer.take(cbuf, off, len);
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        checkOpen();
+        return _buffer.available() > 0 || _in.ready();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_in != null) {
+            Reader in = _in;
+            _in = null;
+            in.close();
+        }
+    }
+
+    /**
+     * Read and convert the next block of _in, returning false iff _in is
+     * exhausted.
+     */
+    private boolean fill() throws IOException {
+        int n = _in.read(_raw, 0, _raw.length);
+        if (n == -1) {
+            return false;
+        }
+        for (int x = 0; x < n; x += 1) {
+            _buffer.add(_raw[x]);
+        }
+        _buffer.convert();
+        return true;
+    }
+
+    /** Throw an IOException if I have been closed. */
+    private void checkOpen() throws IOException {
+        if (_in == null) {
+            throw new IOException("stream closed");
+        }
+    }
+
+    /** Source of characters to convert, or null once closed. */
+    private Reader _in;
+    /** Converted characters awaiting delivery. */
+    private final CipherBuffer _buffer;
+    /** Characters read from _in. */
+    private final char[] _raw;
+}
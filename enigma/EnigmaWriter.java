@@ -0,0 +1,101 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A Writer that converts what is written to it with a Machine and
+ * writes the result to another Writer.  Characters outside the
+ * machine's alphabet (even when upper-cased) are dropped, and the
+ * output may be separated into groups, as by CipherBuffer.  The
+ * machine's rotors advance with each character, so successive writes
+ * continue one message.  Output is buffered until the buffer fills or
+ * the writer is flushed or closed.
+ *
+ * @author John Schulz
+ */
+class EnigmaWriter extends Writer {
+
+    /**
+     * A writer converting with MACHINE, which must be set up, and
+     * writing to OUT in groups of GROUP characters (no groups if GROUP
+     * is 0).
+     */
+    EnigmaWriter(Writer out, Machine machine, int group) {
+        _out = out;
+        _buffer = new CipherBuffer(machine, group);
+    }
+
+    /** A writer converting with MACHINE, which must be set up, and
+     *  writing to OUT without grouping. */
+    EnigmaWriter(Writer out, Machine machine) {
+        this(out, machine, 0);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        checkOpen();
+        for (int x = off; x < off + len; x += 1) {
+            if (_buffer.add(cbuf[x])) {
+                drain();
+            }
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        checkOpen();
+        if (_buffer.add((char) c)) {
+            drain();
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        checkOpen();
+        for (int x = off; x < off + len; x += 1) {
+            if (_buffer.add(str.charAt(x))) {
+                drain();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        drain();
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_out == null) {
+            return;
+        }
+        try {
+            drain();
+        } finally {
+            Writer out = _out;
+            _out = null;
+            out.close();
+        }
+    }
+
+    /** Convert the queued characters and write them to _out. */
+    private void drain() throws IOException {
+        _buffer.convert();
+        _buffer.writeTo(_out);
+    }
+
+    /** Throw an IOException if I have been closed. */
+    private void checkOpen() throws IOException {
+        if (_out == null) {
+            throw new IOException("stream closed");
+        }
+    }
+
+    /** Destination of converted characters, or null once closed. */
+    private Writer _out;
+    /** Characters awaiting conversion and output. */
+    private final CipherBuffer _buffer;
+}
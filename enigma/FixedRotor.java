@@ -13,4 +13,21 @@ class FixedRotor extends Rotor {
         super(name, perm);
     }
 
+    /** A non-moving rotor named NAME whose permutation at the 0 setting
+     *  is given by PERM, and which stays at setting 0 if ATZERO. */
+    FixedRotor(String name, Permutation perm, boolean atZero) {
+        super(name, perm, atZero);
+    }
+
+    /** A rotor like OTHER, at the same setting, sharing its permutation
+     *  and tables. */
+    FixedRotor(FixedRotor other) {
+        super(other);
+    }
+
+    @Override
+    Rotor copy() {
+        return new FixedRotor(this);
+    }
+
 }
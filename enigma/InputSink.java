@@ -0,0 +1,29 @@
+package enigma;
+
+import java.io.IOException;
+
+/** A consumer of the message input read by Main, one character at a
+ *  time.
+ *  @author John Schulz
+ */
+interface InputSink {
+
+    /** Process the input character CH. */
+    void feed(char ch) throws IOException;
+
+    /** Process the LEN characters BUF[OFF .. OFF + LEN - 1]. */
+    default void feed(char[] buf, int off, int len) throws IOException {
+        for (int x = off; x < off + len; x += 1) {
+            feed(buf[x]);
+        }
+    }
+
+    /** Finish processing the input, including a final line that lacks a
+     *  terminator, and write out all pending output. */
+    void finish() throws IOException;
+
+    /** Write out whatever output is ready and release my resources,
+     *  whether or not finish() was called or succeeded. */
+    void close() throws IOException;
+
+}
@@ -0,0 +1,201 @@
+package enigma;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * A set of up to a fixed number of keys of one machine under which a
+ * ciphertext is to be decrypted, as for a key search.  A key is a rotor
+ * order (catalog indices), a start position and a plugboard, and keys
+ * are stored as structure-of-arrays: for each slot X, the rotor bases
+ * (see RotorTables) and settings of all keys are contiguous, as are
+ * the plugboard tables.  Adding a key allocates nothing, and decrypt
+ * runs all keys over the ciphertext with table lookups alone, handing
+ * each key's decryption in blocks to a Scorer, which may abandon the
+ * key early.
+ *
+ * @author John Schulz
+ */
+class KeyBatch {
+
+    /**
+     * Receives blocks of the trial decryptions of decrypt.
+     */
+    interface Scorer {
+        /**
+         * Take PLAIN[0 .. LEN - 1], the decryption under key K of the
+         * ciphertext from position POS, and return false to decrypt no
+         * more of it under K.
+         */
+        boolean score(int k, int[] plain, int pos, int len);
+    }
+
+    /**
+     * A set of at most CAPACITY keys for machines with the alphabet,
+     * slots and catalog of MACHINE.
+     */
+    KeyBatch(Machine machine, int capacity) {
+        _spec = machine.spec();
+        _tables = machine.spec().tables();
+        _size = _tables.size();
+        _numRotors = machine.numRotors();
+        _capacity = capacity;
+        _bases = new int[_numRotors * capacity];
+        _positions = new int[_numRotors * capacity];
+        _saved = new int[_numRotors * capacity];
+        _plugs = new int[_size * capacity];
+        _alive = new boolean[capacity];
+        _base = new int[_numRotors];
+        _pos = new int[_numRotors];
+        _rotating = new boolean[_numRotors];
+        _plain = new int[BLOCK];
+        _active = new int[capacity];
+    }
+
+    /**
+     * Return the rotor bases of the rotor order ORDER, the names of
+     * numRotors() rotors as for Machine.insertRotors, which checks them.
+     */
+    int[] rotorBases(String[] order) {
+        int[] result = _spec.rotorIndices(order);
+        for (int x = 0; x < _numRotors; x += 1) {
+            result[x] *= _size;
+        }
+        return result;
+    }
+
+    /**
+     * Add the key with rotor order BASES (as returned by rotorBases),
+     * start position number POSITION (see Machine.setPosition) and
+     * plugboard PLUGS, which maps each character to its partner (or is
+     * null for none).  Return the number of the key.
+     */
+    int add(int[] bases, long position, int[] plugs) {
+        if (_count == _capacity) {
+            throw error("key batch full");
+        }
+        int k = _count;
+        for (int x = 0; x < _numRotors; x += 1) {
+            _bases[x * _capacity + k] = bases[x];
+            _positions[x * _capacity + k] = 0;
+        }
+        long p = position;
+        for (int x = _numRotors - 1; x > 0; x -= 1) {
+            _positions[x * _capacity + k] = (int) (p % _size);
+            p /= _size;
+        }
+        for (int c = 0; c < _size; c += 1) {
+            _plugs[k * _size + c] = plugs == null ? c : plugs[c];
+        }
+        _alive[k] = true;
+        _count += 1;
+        return k;
+    }
+
+    /** Remove all keys. */
+    void clear() {
+        _count = 0;
+    }
+
+    /** Return the number of keys. */
+    int count() {
+        return _count;
+    }
+
+    /** Return true iff key K has not been abandoned by a Scorer. */
+    boolean alive(int k) {
+        return _alive[k];
+    }
+
+    /**
+     * Decrypt CIPHER[0 .. LEN - 1] (alphabet indices) under each of my
+     * live keys, passing the decryptions to SCORER in blocks of at most
+     * BLOCK characters, in order, and abandoning each key for which
+     * SCORER returns false.  Positions are not updated, so the keys can
+     * be decrypted again.
+     */
+    void decrypt(int[] cipher, int len, Scorer scorer) {
+        int numActive = 0;
+        for (int k = 0; k < _count; k += 1) {
+            if (_alive[k]) {
+                _active[numActive] = k;
+                numActive += 1;
+            }
+        }
+        System.arraycopy(_positions, 0, _saved, 0, _positions.length);
+        for (int pos = 0; pos < len && numActive > 0; pos += BLOCK) {
+            int blockLen = Math.min(BLOCK, len - pos);
+            int kept = 0;
+            for (int a = 0; a < numActive; a += 1) {
+                int k = _active[a];
+                decryptBlock(k, cipher, pos, blockLen);
+                if (scorer.score(k, _plain, pos, blockLen)) {
+                    _active[kept] = k;
+                    kept += 1;
+                } else {
+                    _alive[k] = false;
+                }
+            }
+            numActive = kept;
+        }
+        System.arraycopy(_saved, 0, _positions, 0, _positions.length);
+    }
+
+    /**
+     * Decrypt CIPHER[POS .. POS + LEN - 1] under key K into _plain,
+     * advancing K's rotor settings.
+     */
+    private void decryptBlock(int k, int[] cipher, int pos, int len) {
+        RotorTables tables = _tables;
+        int[] base = _base, p = _pos, plugs = _plugs, plain = _plain;
+        boolean[] rotating = _rotating;
+        int n = _numRotors, offset = k * _size;
+        for (int x = 0; x < n; x += 1) {
+            base[x] = _bases[x * _capacity + k];
+            p[x] = _positions[x * _capacity + k];
+            rotating[x] = tables.rotates(base[x]);
+        }
+        for (int i = 0; i < len; i += 1) {
+            tables.step(base, p, rotating, n);
+            int c = tables.substitute(base, p, n,
+                                      plugs[offset + cipher[pos + i]]);
+            plain[i] = plugs[offset + c];
+        }
+        for (int x = 0; x < n; x += 1) {
+            _positions[x * _capacity + k] = p[x];
+        }
+    }
+
+    /** Largest number of characters passed to a Scorer at once. */
+    static final int BLOCK = 64;
+
+    /** Spec of the machine, used to check rotor orders. */
+    private final MachineSpec _spec;
+    /** Tables of the catalog. */
+    private final RotorTables _tables;
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** Largest number of keys. */
+    private final int _capacity;
+    /** Number of keys. */
+    private int _count;
+    /** Rotor bases and settings of key K in slot X, at X * _capacity +
+     *  K. */
+    private final int[] _bases, _positions;
+    /** Copy of _positions made by decrypt. */
+    private final int[] _saved;
+    /** Plugboard of key K, at K * _size. */
+    private final int[] _plugs;
+    /** _alive[K] iff key K has not been abandoned. */
+    private final boolean[] _alive;
+    /** Rotor bases and settings of the key being decrypted. */
+    private final int[] _base, _pos;
+    /** _rotating[X] iff the rotor in slot X of the key being decrypted
+     *  rotates. */
+    private final boolean[] _rotating;
+    /** Decryption of the current block. */
+    private final int[] _plain;
+    /** Keys still being decrypted. */
+    private final int[] _active;
+}
@@ -0,0 +1,99 @@
+package enigma;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests of KeyBatch.
+ *  @author John Schulz
+ */
+public class KeyBatchTest {
+
+    /** Plugboard of the odd-numbered test keys. */
+    private static final String PLUGBOARD = "(AQ) (EP) (ZM) (BC)";
+
+    /** Return a ciphertext of LEN random letters. */
+    private int[] cipher(int len) {
+        Random random = new Random(KEY_SEED);
+        int[] result = new int[len];
+        for (int i = 0; i < len; i += 1) {
+            result[i] = random.nextInt(26);
+        }
+        return result;
+    }
+
+    @Test
+    public void testMatchesMachine() {
+        Machine proto = MachTest.navalMachine("AAAA");
+        String[][] orders = {
+            {"B", "BETA", "I", "II", "III"}, {"B", "BETA", "III", "II", "I"},
+        };
+        Permutation plugboard = new Permutation(PLUGBOARD, TestUtils.UPPER);
+        int[] plugs = new int[26];
+        for (int c = 0; c < 26; c += 1) {
+            plugs[c] = plugboard.permute(c);
+        }
+        int[] cipher = cipher(3 * KeyBatch.BLOCK + 5);
+        KeyBatch batch = new KeyBatch(proto, KEYS);
+        Random random = new Random(KEY_SEED);
+        long[] positions = new long[KEYS];
+        for (int k = 0; k < KEYS; k += 1) {
+            positions[k] = random.nextInt(26 * 26 * 26 * 26);
+            assertEquals(k, batch.add(batch.rotorBases(orders[k % 2]),
+                                      positions[k],
+                                      k % 2 == 1 ? plugs : null));
+        }
+        int[][] plain = new int[KEYS][cipher.length];
+        batch.decrypt(cipher, cipher.length, (k, text, pos, len) -> {
+                System.arraycopy(text, 0, plain[k], pos, len);
+                return true;
+            });
+        for (int k = 0; k < KEYS; k += 1) {
+            Machine m = proto.copy();
+            m.insertRotors(orders[k % 2]);
+            m.setPosition(positions[k]);
+            m.setPlugboard(k % 2 == 1 ? plugboard
+                           : new Permutation("", TestUtils.UPPER));
+            int[] expected = new int[cipher.length];
+            m.convert(cipher, expected, 0, cipher.length);
+            assertArrayEquals("key " + k, expected, plain[k]);
+            assertTrue(batch.alive(k));
+        }
+    }
+
+    @Test
+    public void testAbandon() {
+        Machine proto = MachTest.navalMachine("AAAA");
+        KeyBatch batch = new KeyBatch(proto, KEYS);
+        int[] bases = batch.rotorBases(new String[] {"B", "BETA", "I", "II",
+                                                     "III"});
+        for (int k = 0; k < KEYS; k += 1) {
+            batch.add(bases, k, null);
+        }
+        int[] cipher = cipher(4 * KeyBatch.BLOCK);
+        int[] blocks = new int[KEYS];
+        batch.decrypt(cipher, cipher.length, (k, text, pos, len) -> {
+                blocks[k] += 1;
+                return k % 3 != 0;
+            });
+        for (int k = 0; k < KEYS; k += 1) {
+            assertEquals(k % 3 == 0 ? 1 : 4, blocks[k]);
+            assertEquals(k % 3 != 0, batch.alive(k));
+        }
+        batch.decrypt(cipher, cipher.length, (k, text, pos, len) -> {
+                assertFalse(k % 3 == 0);
+                return true;
+            });
+    }
+
+    /** Number of keys in the tests. */
+    private static final int KEYS = 50;
+
+    /** Seed of the random keys and ciphertext. */
+    private static final long KEY_SEED = 0x3E1;
+}
@@ -0,0 +1,149 @@
+package enigma;
+
+/**
+ * The whole sequence of substitutions a machine performs from a given
+ * state, computed once.  The positions of the rotors are eventually
+ * periodic (see Machine.cycle), and so is the substitution at each key
+ * press, since it depends only on the positions and the fixed wiring.
+ * A keystream holds, in one flat table, the substitution for each key
+ * press of the tail and of one period, and converts a message of any
+ * length by walking that table, wrapping from its end back to the start
+ * of the period.  It converts exactly as its machine would from the
+ * same state, but at one table lookup per character.
+ *
+ * <p>A keystream has a current position (initially the state it was
+ * built from), which conversions advance; reset returns to the start,
+ * so one keystream serves every message sent under the same key.
+ *
+ * @author John Schulz
+ */
+class Keystream {
+
+    /**
+     * The keystream of MACHINE in its current state, which must be set
+     * up.  Does not change MACHINE.
+     */
+    Keystream(Machine machine) {
+        this(machine, DEFAULT_LIMIT);
+    }
+
+    /**
+     * The keystream of MACHINE in its current state, which must be set
+     * up, with a table of at most LIMIT entries.  Does not change
+     * MACHINE.
+     */
+    Keystream(Machine machine, int limit) {
+        _size = machine.alphabet().size();
+        long[] cycle = machine.cycle(limit / _size);
+        _tail = (int) cycle[0];
+        _period = (int) cycle[1];
+        _end = (_tail + _period) * _size;
+        _table = new char[_end];
+        Machine m = machine.copy();
+        for (int base = 0; base < _end; base += _size) {
+            m.step();
+            for (int c = 0; c < _size; c += 1) {
+                _table[base + c] = (char) m.substitute(c);
+            }
+        }
+    }
+
+    /**
+     * Return the keystream of MACHINE in its current state, which must
+     * be set up, or null if its table might exceed DEFAULT_LIMIT
+     * entries.  The test is made from the number of combinations of
+     * rotor positions, so a machine with too many costs no search.
+     * Does not change MACHINE.
+     */
+    static Keystream of(Machine machine) {
+        if (machine.positionCount()
+            > DEFAULT_LIMIT / machine.alphabet().size()) {
+            return null;
+        }
+        return new Keystream(machine);
+    }
+
+    /**
+     * Return the number of key presses before the rotor positions enter
+     * their cycle.
+     */
+    int tail() {
+        return _tail;
+    }
+
+    /**
+     * Return the number of key presses after which the substitutions
+     * repeat, once past the tail.
+     */
+    int period() {
+        return _period;
+    }
+
+    /**
+     * Return the number of entries in my table (two bytes each).
+     */
+    int entries() {
+        return _end;
+    }
+
+    /**
+     * Return to the state from which I was built.
+     */
+    void reset() {
+        _base = 0;
+    }
+
+    /**
+     * Return the conversion of C (an index into the alphabet) at my
+     * current position, and advance my position.
+     */
+    int convert(int c) {
+        int result = _table[_base + c];
+        advance();
+        return result;
+    }
+
+    /**
+     * Convert the LEN characters (as indices into the alphabet) IN[OFF],
+     * ..., IN[OFF + LEN - 1], storing the results into the corresponding
+     * elements of OUT and advancing once per character, as for
+     * Machine.convert.  IN and OUT may be the same array.
+     */
+    void convert(int[] in, int[] out, int off, int len) {
+        char[] table = _table;
+        int base = _base, size = _size, end = _end;
+        for (int x = off; x < off + len; x += 1) {
+            out[x] = table[base + in[x]];
+            base += size;
+            if (base == end) {
+                base = _tail * size;
+            }
+        }
+        _base = base;
+    }
+
+    /** Advance my position by one key press. */
+    private void advance() {
+        _base += _size;
+        if (_base == _end) {
+            _base = _tail * _size;
+        }
+    }
+
+    /**
+     * Default maximum number of table entries: 32 MB of table.
+     */
+    static final int DEFAULT_LIMIT = 1 << 24;
+
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Key presses in the tail and in the period. */
+    private final int _tail, _period;
+    /** _table[T * _size + C] is the conversion of C at key press T (from
+     *  0), for T < _tail + _period. */
+    private final char[] _table;
+    /** Length of _table. */
+    private final int _end;
+    /** Index in _table of the substitution for the next key press. */
+    private int _base;
+}
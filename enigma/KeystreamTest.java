@@ -0,0 +1,211 @@
+package enigma;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Tests of Machine.cycle and Keystream.
+ *  @author John Schulz
+ */
+public class KeystreamTest {
+
+    @Test
+    public void testPeriod() {
+        Machine mach = MachTest.navalMachine("AAAA");
+        assertEquals(26 * 25 * 26, mach.period());
+        long[] cycle = mach.cycle(Long.MAX_VALUE);
+        assertEquals(0, cycle[0]);
+        assertEquals(26 * 25 * 26, cycle[1]);
+        assertEquals("AAAA", mach.stateAt(0));
+    }
+
+    @Test
+    public void testTail() {
+        Machine mach = MachTest.navalMachine("AAEA");
+        long[] cycle = mach.cycle(Long.MAX_VALUE);
+        assertTrue(cycle[0] > 0);
+        assertEquals(26 * 25 * 26, cycle[1]);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testLimit() {
+        MachTest.navalMachine("AAAA").cycle(1000);
+    }
+
+    /** Check that the keystream of the naval machine at SETTING converts
+     *  a message longer than its tail and period as the machine does. */
+    private void checkKeystream(String setting) {
+        Machine mach = MachTest.navalMachine(setting);
+        Keystream keystream = mach.keystream();
+        int[] msg = new int[3 * 26 * 25 * 26 + 17];
+        Random rand = new Random(6);
+        for (int x = 0; x < msg.length; x += 1) {
+            msg[x] = rand.nextInt(26);
+        }
+        int[] expected = new int[msg.length], result = new int[msg.length];
+        mach.convert(msg, expected, 0, msg.length);
+        result[0] = keystream.convert(msg[0]);
+        keystream.convert(msg, result, 1, msg.length - 1);
+        assertArrayEquals(expected, result);
+        keystream.reset();
+        keystream.convert(msg, result, 0, 100);
+        assertEquals(expected[99], result[99]);
+    }
+
+    @Test
+    public void testKeystream() {
+        checkKeystream("AXLE");
+        checkKeystream("AAEA");
+    }
+
+    /** Return a machine with reflector B and PAWLS moving rotors, from
+     *  I, II, III, IV and V, with no rotors inserted.  With five, its
+     *  period is far too long for a keystream. */
+    private static Machine movingMachine(int pawls) {
+        ArrayList<Rotor> all = new ArrayList<>();
+        all.add(new Reflector("B", new Permutation(TestUtils.NAVALA.get("B"),
+                                                   TestUtils.UPPER)));
+        String[] names = {"I", "II", "III", "IV", "V"};
+        String[] notches = {"Q", "E", "V", "J", "Z"};
+        for (int k = 0; k < names.length; k += 1) {
+            all.add(new MovingRotor(names[k],
+                                    new Permutation(TestUtils.NAVALA
+                                                    .get(names[k]),
+                                                    TestUtils.UPPER),
+                                    notches[k]));
+        }
+        return new Machine(TestUtils.UPPER, pawls + 1, pawls, all);
+    }
+
+    /** Return the output of converting INPUT with MACH, using keystreams
+     *  iff KEYSTREAMS. */
+    private static String process(Machine mach, String input,
+                                  boolean keystreams) throws IOException {
+        StringWriter out = new StringWriter();
+        MessageProcessor processor =
+            new MessageProcessor(mach, TestUtils.UPPER, out);
+        processor.useKeystreams(keystreams);
+        for (int x = 0; x < input.length(); x += 1) {
+            processor.feed(input.charAt(x));
+        }
+        processor.finish();
+        return out.toString();
+    }
+
+    @Test
+    public void testMessageProcessor() throws IOException {
+        String input = "* B BETA I II III AXLE (YF) (ZH)\n"
+            + "FROM HIS SHOULDER HIAWATHA\n"
+            + "TOOK THE CAMERA OF ROSEWOOD\n"
+            + "* B BETA III II I AXLE\n"
+            + "MADE OF SLIDING FOLDING ROSEWOOD\n"
+            + "* B BETA I II III AXLE (YF) (ZH)\n"
+            + "FROM HIS SHOULDER HIAWATHA\n";
+        assertEquals(process(MachTest.navalMachine("AAAA"), input, false),
+                     process(MachTest.navalMachine("AAAA"), input, true));
+    }
+
+    @Test
+    public void testLongPeriod() throws IOException {
+        Machine mach = movingMachine(5);
+        mach.insertRotors(new String[] {"B", "I", "II", "III", "IV", "V"});
+        mach.setRotors("AAAAA");
+        mach.setPlugboard(new Permutation("", TestUtils.UPPER));
+        assertNull(Keystream.of(mach));
+        String input = "* B I II III IV V AAAAA\n"
+            + "FROM HIS SHOULDER HIAWATHA\n"
+            + "* B I II III IV V AAAAA\n"
+            + "TOOK THE CAMERA OF ROSEWOOD\n";
+        assertEquals(process(movingMachine(5), input, false),
+                     process(movingMachine(5), input, true));
+    }
+
+    /** Return the settings line for rotors ROTORS (which name the
+     *  reflector and moving rotors of movingMachine or navalMachine)
+     *  at the K-th setting, counting from all A's. */
+    private static String settings(String rotors, int k) {
+        int n = rotors.split(" ").length - 1;
+        char[] setting = new char[n];
+        for (int x = n - 1; x >= 0; x -= 1, k /= 26) {
+            setting[x] = (char) ('A' + k % 26);
+        }
+        return "* " + rotors + " " + new String(setting);
+    }
+
+    /** Feed TEXT to PROCESSOR. */
+    private static void feed(MessageProcessor processor, String text)
+        throws IOException {
+        for (int x = 0; x < text.length(); x += 1) {
+            processor.feed(text.charAt(x));
+        }
+    }
+
+    @Test
+    public void testCacheLimit() throws IOException {
+        StringWriter out = new StringWriter();
+        MessageProcessor processor =
+            new MessageProcessor(MachTest.navalMachine("AAAA"),
+                                 TestUtils.UPPER, out);
+        processor.useKeystreams(true);
+        String rotors = "B BETA I II III";
+        String first = settings(rotors, 0);
+        StringBuilder input = new StringBuilder();
+        for (int k = 1; k <= MessageProcessor.KEYSTREAM_CACHE_SIZE; k += 1) {
+            String text = first + "\nHELLO\n" + settings(rotors, k)
+                + "\nWORLD\n";
+            feed(processor, text);
+            input.append(text);
+        }
+        processor.finish();
+        assertTrue(processor.hasKeystream(first));
+        assertFalse(processor.hasKeystream(settings(rotors, 1)));
+        assertTrue(processor.hasKeystream(settings(rotors, 2)));
+        assertTrue(processor.hasKeystream(
+            settings(rotors, MessageProcessor.KEYSTREAM_CACHE_SIZE)));
+        assertEquals(process(MachTest.navalMachine("AAAA"),
+                             input.toString(), false),
+                     out.toString());
+    }
+
+    @Test
+    public void testCacheEntries() throws IOException {
+        Machine mach = movingMachine(4);
+        StringWriter out = new StringWriter();
+        MessageProcessor processor =
+            new MessageProcessor(mach, TestUtils.UPPER, out);
+        processor.useKeystreams(true);
+        String rotors = "B I II III IV";
+        String input = "";
+        for (int k = 0; k < 4; k += 1) {
+            input += settings(rotors, k) + "\nFROM HIS SHOULDER\n";
+        }
+        feed(processor, input + settings(rotors, 1) + "\n");
+        processor.finish();
+        long[] entries = new long[4];
+        for (int k = 0; k < 4; k += 1) {
+            mach.insertRotors(new String[] {"B", "I", "II", "III", "IV"});
+            mach.setRotors(settings(rotors, k).substring(16));
+            mach.setPlugboard(new Permutation("", TestUtils.UPPER));
+            entries[k] = Keystream.of(mach).entries();
+        }
+        assertTrue(entries[1] + entries[2] + entries[3]
+                   <= MessageProcessor.KEYSTREAM_CACHE_ENTRIES);
+        assertTrue(entries[0] + entries[1] + entries[2] + entries[3]
+                   > MessageProcessor.KEYSTREAM_CACHE_ENTRIES);
+        assertFalse(processor.hasKeystream(settings(rotors, 0)));
+        for (int k = 1; k < 4; k += 1) {
+            assertTrue(processor.hasKeystream(settings(rotors, k)));
+        }
+        assertEquals(process(movingMachine(4), input, false),
+                     out.toString());
+    }
+}
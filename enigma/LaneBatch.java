@@ -0,0 +1,198 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * A batch of independent messages to be converted together by a
+ * LaneEngine, each with its own rotors, start positions and plugboard.
+ * Everything is held in flat arrays of ints, so that an engine can
+ * work on many messages at once with table lookups alone:
+ *
+ *     the catalog: tables() (see RotorTables), whose arrays are also
+ *         returned by forwardTable(), backwardTable(), notchTable() and
+ *         rotates();
+ *     message K: rotorBases() holds R * size() at K * numRotors() + X
+ *         for the catalog index R of the rotor in slot X, positions()
+ *         holds that rotor's setting at the same place, plugForward()
+ *         and plugBackward() hold the plugboard permutation and its
+ *         inverse at K * size(), and its characters (as alphabet
+ *         indices) are text()[start(K) .. start(K) + length(K) - 1].
+ *
+ * Conversion replaces the text of each message and leaves positions()
+ * as the machine would leave them.
+ *
+ * @author John Schulz
+ */
+class LaneBatch {
+
+    /**
+     * An empty batch of messages for machines with the alphabet, slots
+     * and catalog of MACHINE.
+     */
+    LaneBatch(Machine machine) {
+        _tables = machine.spec().tables();
+        _size = _tables.size();
+        _numRotors = machine.numRotors();
+    }
+
+    /**
+     * Add the message MSG[OFF .. OFF + LEN - 1] (alphabet indices), to be
+     * converted by a machine in the state of M, which must have the same
+     * catalog as mine and have its rotors and plugboard set.  Return the
+     * number of the message.  M is unchanged.
+     */
+    int add(Machine m, int[] msg, int off, int len) {
+        if (m.getAllRotors().size() != _tables.count()
+            || m.numRotors() != _numRotors
+            || m.alphabet().size() != _size) {
+            throw error("machine does not match batch");
+        }
+        int k = _count;
+        reserve(k + 1, _textLength + len);
+        Rotor[] rotors = m.getRotors();
+        for (int x = 0; x < _numRotors; x += 1) {
+            _rotorBases[k * _numRotors + x] = m.slotIndex(x) * _size;
+            _positions[k * _numRotors + x] = rotors[x].setting();
+        }
+        Permutation plugs = m.getPlugboarded().permutation();
+        for (int c = 0; c < _size; c += 1) {
+            _plugForward[k * _size + c] = plugs.permute(c);
+            _plugBackward[k * _size + c] = plugs.invert(c);
+        }
+        System.arraycopy(msg, off, _text, _textLength, len);
+        _starts[k] = _textLength;
+        _lengths[k] = len;
+        _textLength += len;
+        _count += 1;
+        return k;
+    }
+
+    /** Make room for COUNT messages with TEXTLENGTH characters in
+     *  all. */
+    private void reserve(int count, int textLength) {
+        if (count > _starts.length) {
+            int cap = Math.max(count, 2 * _starts.length);
+            _starts = Arrays.copyOf(_starts, cap);
+            _lengths = Arrays.copyOf(_lengths, cap);
+            _rotorBases = Arrays.copyOf(_rotorBases, cap * _numRotors);
+            _positions = Arrays.copyOf(_positions, cap * _numRotors);
+            _plugForward = Arrays.copyOf(_plugForward, cap * _size);
+            _plugBackward = Arrays.copyOf(_plugBackward, cap * _size);
+        }
+        if (textLength > _text.length) {
+            _text = Arrays.copyOf(_text,
+                                  Math.max(textLength, 2 * _text.length));
+        }
+    }
+
+    /** Remove all messages, keeping the space they used. */
+    void clear() {
+        _count = 0;
+        _textLength = 0;
+    }
+
+    /** Return the number of messages. */
+    int count() {
+        return _count;
+    }
+
+    /** Copy the text of message K into OUT, starting at OUT[OFF]. */
+    void get(int k, int[] out, int off) {
+        System.arraycopy(_text, _starts[k], out, off, _lengths[k]);
+    }
+
+    /** Return the size of the alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of rotor slots. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the offset of message K in text(). */
+    int start(int k) {
+        return _starts[k];
+    }
+
+    /** Return the length of message K. */
+    int length(int k) {
+        return _lengths[k];
+    }
+
+    /* The following return the arrays described in the class comment
+     * themselves, not copies, for engines to read and update. */
+
+    /** Return the tables of the catalog rotors. */
+    RotorTables tables() {
+        return _tables;
+    }
+
+    /** Return the forward tables of the catalog rotors. */
+    int[] forwardTable() {
+        return _tables.forward();
+    }
+
+    /** Return the inverse tables of the catalog rotors. */
+    int[] backwardTable() {
+        return _tables.backward();
+    }
+
+    /** Return the notch tables of the catalog rotors. */
+    int[] notchTable() {
+        return _tables.notches();
+    }
+
+    /** Return the rotation flags of the catalog rotors. */
+    int[] rotates() {
+        return _tables.rotates();
+    }
+
+    /** Return the table offsets of the rotors of each message. */
+    int[] rotorBases() {
+        return _rotorBases;
+    }
+
+    /** Return the rotor settings of each message. */
+    int[] positions() {
+        return _positions;
+    }
+
+    /** Return the plugboard of each message. */
+    int[] plugForward() {
+        return _plugForward;
+    }
+
+    /** Return the inverse plugboard of each message. */
+    int[] plugBackward() {
+        return _plugBackward;
+    }
+
+    /** Return the text of the messages. */
+    int[] text() {
+        return _text;
+    }
+
+    /** Tables of the catalog. */
+    private final RotorTables _tables;
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of messages. */
+    private int _count;
+    /** Number of characters of _text in use. */
+    private int _textLength;
+    /** Offsets and lengths of the messages in _text. */
+    private int[] _starts = new int[0], _lengths = new int[0];
+    /** Rotors and their settings, by message and slot. */
+    private int[] _rotorBases = new int[0], _positions = new int[0];
+    /** Plugboards, by message. */
+    private int[] _plugForward = new int[0], _plugBackward = new int[0];
+    /** Text of all messages. */
+    private int[] _text = new int[0];
+}
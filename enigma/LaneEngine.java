@@ -0,0 +1,32 @@
+package enigma;
+
+/** Converts the messages of a LaneBatch, each as Machine.convert would
+ *  with the machine from which it was added.
+ *  @author John Schulz
+ */
+interface LaneEngine {
+
+    /** Convert every message of BATCH in place, leaving its rotor
+     *  positions as after the conversion. */
+    void convert(LaneBatch batch);
+
+    /**
+     * Return the fastest engine available: VectorLaneEngine, which
+     * converts one message per vector lane, if it is on the class path
+     * and the jdk.incubator.vector module is present, else a
+     * ScalarLaneEngine.
+     */
+    static LaneEngine create() {
+        try {
+            return (LaneEngine) Class.forName(VECTOR_ENGINE)
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return new ScalarLaneEngine();
+        }
+    }
+
+    /** Name of the class of the vector engine, which is compiled
+     *  separately (see vector/Makefile). */
+    String VECTOR_ENGINE = "enigma.VectorLaneEngine";
+
+}
@@ -0,0 +1,76 @@
+package enigma;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/** Tests of LaneBatch and the LaneEngines.
+ *  @author John Schulz
+ */
+public class LaneEngineTest {
+
+    /** Check that ENGINE converts a batch of messages under assorted
+     *  keys exactly as Machine.convert does. */
+    private void checkEngine(LaneEngine engine) {
+        Random random = new Random(ENGINE_SEED);
+        Machine proto = MachTest.navalMachine("AAAA");
+        LaneBatch batch = new LaneBatch(proto);
+        String[][] orders = {
+            {"B", "BETA", "I", "II", "III"}, {"B", "BETA", "III", "I", "II"},
+            {"B", "BETA", "II", "III", "I"},
+        };
+        int[][] expected = new int[MESSAGES][];
+        int[][] finals = new int[MESSAGES][];
+        for (int k = 0; k < MESSAGES; k += 1) {
+            Machine m = proto.copy();
+            m.insertRotors(orders[k % orders.length]);
+            char[] setting = new char[4];
+            for (int x = 0; x < setting.length; x += 1) {
+                setting[x] = (char) ('A' + random.nextInt(26));
+            }
+            m.setRotors(new String(setting));
+            m.setPlugboard(new Permutation(k % 2 == 0 ? "(AQ) (EP) (ZM)" : "",
+                                           TestUtils.UPPER));
+            int[] msg = new int[random.nextInt(MAX_LENGTH + 1)];
+            for (int i = 0; i < msg.length; i += 1) {
+                msg[i] = random.nextInt(26);
+            }
+            assertEquals(k, batch.add(m, msg, 0, msg.length));
+            expected[k] = msg.clone();
+            m.convert(expected[k], expected[k], 0, msg.length);
+            finals[k] = m.positions();
+        }
+        engine.convert(batch);
+        for (int k = 0; k < MESSAGES; k += 1) {
+            int[] result = new int[batch.length(k)];
+            batch.get(k, result, 0);
+            assertArrayEquals("message " + k, expected[k], result);
+            assertArrayEquals("positions " + k, finals[k],
+                              Arrays.copyOfRange(batch.positions(), k * 5,
+                                                 k * 5 + 5));
+        }
+    }
+
+    @Test
+    public void testScalarEngine() {
+        checkEngine(new ScalarLaneEngine());
+    }
+
+    @Test
+    public void testBestEngine() {
+        checkEngine(LaneEngine.create());
+    }
+
+    /** Number of messages in the test batch. */
+    private static final int MESSAGES = 101;
+
+    /** Longest message in the test batch. */
+    private static final int MAX_LENGTH = 700;
+
+    /** Seed of the random keys and messages. */
+    private static final long ENGINE_SEED = 61;
+}
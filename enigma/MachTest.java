@@ -4,8 +4,11 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class MachTest {
     @Test
@@ -66,6 +69,179 @@ public class MachTest {
 
     }
 
+    /** Return a machine with the naval rotors B, BETA, I, II, III
+     *  inserted at setting SETTING and an empty plugboard. */
+    static Machine navalMachine(String setting) {
+        ArrayList<Rotor> all = new ArrayList<>();
+        all.add(new Reflector("B", new Permutation(TestUtils.NAVALA.get("B"),
+                                                   TestUtils.UPPER)));
+        all.add(new FixedRotor("Beta",
+                               new Permutation(TestUtils.NAVALA.get("Beta"),
+                                               TestUtils.UPPER)));
+        all.add(new MovingRotor("I",
+                                new Permutation(TestUtils.NAVALA.get("I"),
+                                                TestUtils.UPPER), "Q"));
+        all.add(new MovingRotor("II",
+                                new Permutation(TestUtils.NAVALA.get("II"),
+                                                TestUtils.UPPER), "E"));
+        all.add(new MovingRotor("III",
+                                new Permutation(TestUtils.NAVALA.get("III"),
+                                                TestUtils.UPPER), "V"));
+        Machine mach = new Machine(TestUtils.UPPER, 5, 3, all);
+        mach.insertRotors(new String[] {"B", "BETA", "I", "II", "III"});
+        mach.setRotors(setting);
+        mach.setPlugboard(new Permutation("", TestUtils.UPPER));
+        return mach;
+    }
+
+    @Test
+    public void testInsertRotorsByName() {
+        Machine mach = navalMachine("AAAA");
+        mach.insertRotors(new String[] {"b", "Beta", "iii", "I", "ii"});
+        assertEquals("III", mach.getRotors()[2].name());
+        try {
+            mach.insertRotors(new String[] {"B", "BETA", "I", "II", "IX"});
+            fail("unknown rotor accepted");
+        } catch (EnigmaException excp) {
+            assertEquals("III", mach.getRotors()[2].name());
+        }
+    }
+
+    @Test
+    public void testConvertString() {
+        assertEquals("ILBDAAMTAZ", navalMachine("AAAA").convert("HELLOWORLD"));
+    }
+
+    @Test
+    public void testBulkConvert() {
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        Machine single = navalMachine("AXLE");
+        int[] expected = new int[msg.length()];
+        for (int x = 0; x < msg.length(); x += 1) {
+            expected[x] = single.convert(msg.charAt(x) - 'A');
+        }
+        int[] buf = new int[msg.length() + 2];
+        for (int x = 0; x < msg.length(); x += 1) {
+            buf[x + 1] = msg.charAt(x) - 'A';
+        }
+        navalMachine("AXLE").convert(buf, buf, 1, msg.length());
+        for (int x = 0; x < msg.length(); x += 1) {
+            assertEquals(expected[x], buf[x + 1]);
+        }
+        char[] chars = ("." + msg + ".").toCharArray();
+        navalMachine("AXLE").convert(chars, 1, msg.length());
+        for (int x = 0; x < msg.length(); x += 1) {
+            assertEquals((char) ('A' + expected[x]), chars[x + 1]);
+        }
+        assertEquals('.', chars[0]);
+    }
+
+    @Test
+    public void testCompositeTables() {
+        Machine plain = navalMachine("AXLE");
+        Machine composite = navalMachine("AXLE");
+        composite.useCompositeTables(true);
+        for (int x = 0; x < 20000; x += 1) {
+            int c = (x * 7) % 26;
+            assertEquals(plain.convert(c), composite.convert(c));
+        }
+        composite.setPlugboard(new Permutation("(AQ) (EP)", TestUtils.UPPER));
+        plain.setPlugboard(new Permutation("(AQ) (EP)", TestUtils.UPPER));
+        assertEquals(plain.convert("HELLOWORLD"),
+                     composite.convert("HELLOWORLD"));
+    }
+
+    @Test
+    public void testAdvanceBy() {
+        Machine stepped = navalMachine("AXLE");
+        Machine jumped = navalMachine("AXLE");
+        int[] counts = {0, 1, 2, 25, 26, 27, 650, 677, 5000, 17000};
+        int done = 0;
+        for (int n : counts) {
+            for (; done < n; done += 1) {
+                stepped.convert(0);
+            }
+            assertEquals(getSetting(TestUtils.UPPER, stepped.getRotors()),
+                         "A" + navalMachine("AXLE").stateAt(n));
+        }
+        jumped.advanceBy(done);
+        assertEquals(getSetting(TestUtils.UPPER, stepped.getRotors()),
+                     getSetting(TestUtils.UPPER, jumped.getRotors()));
+        assertEquals(stepped.convert("ENIGMA"), jumped.convert("ENIGMA"));
+    }
+
+    @Test
+    public void testAdvanceByDoubleStep() {
+        Alphabet ac = new CharacterRange('A', 'C');
+        ArrayList<Rotor> all = new ArrayList<>();
+        all.add(new Reflector("R1", new Permutation("(AC)", ac)));
+        all.add(new MovingRotor("R2", new Permutation("(ABC)", ac), "C"));
+        all.add(new MovingRotor("R3", new Permutation("(ABC)", ac), "C"));
+        all.add(new MovingRotor("R4", new Permutation("(ABC)", ac), "C"));
+        Machine mach = new Machine(ac, 4, 3, all);
+        mach.insertRotors(new String[] {"R1", "R2", "R3", "R4"});
+        mach.setRotors("AAA");
+        assertEquals("BAB", mach.stateAt(7));
+        assertEquals("AAB", mach.stateAt(19));
+        mach.advanceBy(13);
+        assertEquals("ACAB", getSetting(ac, mach.getRotors()));
+    }
+
+    @Test
+    public void testParallelConvert() {
+        int[] msg = new int[300001];
+        for (int x = 0; x < msg.length; x += 1) {
+            msg[x] = (x * x + 3 * x) % 26;
+        }
+        Machine sequential = navalMachine("AXLE");
+        int[] expected = new int[msg.length];
+        sequential.convert(msg, expected, 0, msg.length);
+
+        Machine parallel = navalMachine("AXLE");
+        int[] out = new int[msg.length];
+        parallel.convertParallel(msg, out, 0, msg.length,
+                                 ForkJoinPool.commonPool());
+        assertTrue(Arrays.equals(expected, out));
+        assertEquals(sequential.convert("ENIGMA"), parallel.convert("ENIGMA"));
+
+        Machine streamed = navalMachine("AXLE");
+        assertTrue(Arrays.equals(expected,
+                                 streamed.convertStream(msg, true).toArray()));
+        assertEquals(navalMachine("AXLE").convertStream(msg, false).sum(),
+                     Arrays.stream(expected).sum());
+    }
+
+    @Test
+    public void testCursor() {
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        Machine mach = navalMachine("AXLE");
+        mach.setPlugboard(new Permutation("(AQ) (EP)", TestUtils.UPPER));
+        MachineCursor cursor = mach.cursor();
+        MachineCursor snap = cursor.snapshot();
+        Machine copy = mach.copy();
+        assertTrue(mach.spec() == copy.spec());
+        String expected = mach.convert(msg);
+        assertEquals(expected, cursor.convert(msg));
+        assertEquals(expected, copy.convert(msg));
+        assertEquals(getSetting(TestUtils.UPPER, mach.getRotors()),
+                     getSetting(TestUtils.UPPER, copy.getRotors()));
+        assertEquals(expected, snap.convert(msg));
+        assertTrue(Arrays.equals(mach.positions(), snap.positions()));
+
+        MachineCursor fresh = new MachineCursor(mach.spec());
+        fresh.insertRotors(new String[] {"B", "BETA", "I", "II", "III"});
+        fresh.setRotors("AXLE");
+        fresh.setPlugboard(new Permutation("(AQ) (EP)", TestUtils.UPPER));
+        assertEquals(expected, fresh.convert(msg));
+
+        int[] before = mach.positions();
+        Machine other = mach.copy();
+        other.insertRotors(new String[] {"B", "BETA", "III", "II", "I"});
+        other.setRotors("ZZZZ");
+        other.convert(msg);
+        assertTrue(Arrays.equals(before, mach.positions()));
+    }
+
     private String getSetting(Alphabet alph, Rotor[] machineRotors) {
         String currSetting = "";
         for (Rotor r : machineRotors) {
@@ -2,7 +2,12 @@ package enigma;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import static enigma.EnigmaException.error;
 
 /**
  * Class that represents a complete enigma machine.
@@ -40,12 +45,99 @@ class Machine {
      */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
-        _alphabet = alpha;
-        _numRotors = numRotors;
-        _numPawls = pawls;
+        this(new MachineSpec(alpha, numRotors, pawls, allRotors));
+    }
+
+    /**
+     * A new machine of the kind described by SPEC, with no rotors
+     * inserted.
+     */
+    Machine(MachineSpec spec) {
+        this(spec, new ArrayList<>(spec.catalog()), true);
+    }
+
+    /**
+     * A new machine of the kind described by SPEC, whose available
+     * rotors are CATALOG, the rotors of SPEC's catalog in the same
+     * order.  If OWNSCATALOG, insertRotors inserts the rotors of CATALOG
+     * themselves; otherwise CATALOG is shared with other machines and
+     * insertRotors inserts copies of them.
+     */
+    private Machine(MachineSpec spec, ArrayList<Rotor> catalog,
+                    boolean ownsCatalog) {
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _numRotors = spec.numRotors();
+        _numPawls = spec.numPawls();
         rotorr = new Rotor[_numRotors];
-        ArrayList<Rotor> a = new ArrayList<>(allRotors);
-        aRotors = a;
+        _slotIndex = new int[_numRotors];
+        aRotors = catalog;
+        _ownsCatalog = ownsCatalog;
+    }
+
+    /**
+     * Return a new machine in the same state as me (rotors, settings,
+     * plugboard and engine) with its own copies of my inserted rotors,
+     * so that the two may be used independently, e.g. in different
+     * threads.  The spec and catalog are shared, so only numRotors()
+     * rotors are copied; the copy inserts copies of catalog rotors.
+     */
+    Machine copy() {
+        Machine result = new Machine(_spec, aRotors, false);
+        for (int x = 0; x < rotorr.length; x += 1) {
+            if (rotorr[x] != null) {
+                result.rotorr[x] = result.slotRotor(x, rotorr);
+                result._slotIndex[x] = _slotIndex[x];
+            }
+        }
+        result._notchPlan = _notchPlan;
+        result._rotatingPlan = _rotatingPlan;
+        result._plugboarded = _plugboarded;
+        if (_composite != null) {
+            result.useCompositeTables(true);
+        }
+        return result;
+    }
+
+    /**
+     * Return a rotor for my slot X, given that each slot Y <= X is to
+     * hold a copy of ROTORS[Y]: the rotor already in an earlier slot Y
+     * for which ROTORS[Y] is ROTORS[X], if any (so that a rotor named
+     * twice is one rotor, as it would be without copying), else a new
+     * copy of ROTORS[X].
+     */
+    private Rotor slotRotor(int x, Rotor[] rotors) {
+        for (int y = 0; y < x; y += 1) {
+            if (rotors[y] == rotors[x]) {
+                return rotorr[y];
+            }
+        }
+        return rotors[x].copy();
+    }
+
+    /**
+     * Return the unchanging description of my kind of machine.
+     */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /**
+     * Return a new cursor with my alphabet and catalog in my current
+     * state: my rotors, their settings and my plugboard, which must all
+     * have been set.
+     */
+    MachineCursor cursor() {
+        MachineCursor result = new MachineCursor(_spec);
+        result.setState(_slotIndex, positions(), _plugboarded.permutation());
+        return result;
+    }
+
+    /**
+     * Return my alphabet.
+     */
+    Alphabet alphabet() {
+        return _alphabet;
     }
 
     /**
@@ -68,37 +160,179 @@ class Machine {
      * Initially, all rotors are set at their 0 setting.
      */
     void insertRotors(String[] rotors) {
-        ArrayList<Rotor> added = new ArrayList<>();
+        int[] indices = _spec.rotorIndices(rotors);
+        Rotor[] chosen = new Rotor[rotors.length];
         for (int x = 0; x < rotors.length; x += 1) {
-            String y = rotors[x].toUpperCase();
-            Iterator<Rotor> rot = aRotors.iterator();
-            while (rot.hasNext()) {
-                Rotor next = rot.next();
-                String upper = next.name().toUpperCase();
-                if (upper.equals(y)) {
-                    rotorr[x] = next;
-                    added.add(rotorr[x]);
-                }
-            }
+            chosen[x] = aRotors.get(indices[x]);
+            rotorr[x] = _ownsCatalog ? chosen[x] : slotRotor(x, chosen);
+            _slotIndex[x] = indices[x];
         }
-        int actualPawls = 0;
+        compileStepping();
+        clearComposite();
+        _odometer = null;
+        _core = null;
+    }
+
+    /**
+     * Compile the stepping plan of my rotors: the notch masks of the
+     * slots after the first that hold moving rotors (null for the
+     * others, whose notches never engage) and which slots rotate.
+     */
+    private void compileStepping() {
+        boolean[][] notches = new boolean[rotorr.length][];
+        boolean[] rotating = new boolean[rotorr.length];
         for (int x = 0; x < rotorr.length; x += 1) {
-            if (MovingRotor.class.isInstance(rotorr[x])) {
-                actualPawls += 1;
+            rotating[x] = rotorr[x].rotates();
+            if (x > 0 && rotorr[x] instanceof MovingRotor) {
+                notches[x] = ((MovingRotor) rotorr[x]).notchMask();
             }
         }
-        if (actualPawls != numPawls()) {
-            String e = "Amount of pawls does not match + "
-                    + "the number of moving Rotors";
-            throw new EnigmaException(e);
+        _notchPlan = notches;
+        _rotatingPlan = rotating;
+    }
+
+    /**
+     * Return the index in getAllRotors() of the rotor in slot X, which
+     * must have been filled by insertRotors.
+     */
+    int slotIndex(int x) {
+        return _slotIndex[x];
+    }
+
+    /**
+     * Return the rotor orders my catalog allows (see
+     * MachineSpec.rotorOrders).
+     */
+    List<String[]> rotorOrders() {
+        return _spec.rotorOrders();
+    }
+
+    /**
+     * Return the number of start positions of my rotors (the alphabet
+     * size to the power numRotors() - 1).
+     */
+    long numPositions() {
+        return _spec.numPositions();
+    }
+
+    /**
+     * Set my rotors to start position number INDEX, where
+     * 0 <= INDEX < numPositions() and the setting of slot 1 is the most
+     * significant digit.
+     */
+    void setPosition(long index) {
+        int size = _alphabet.size();
+        long p = index;
+        for (int x = rotorr.length - 1; x > 0; x -= 1) {
+            rotorr[x].set((int) (p % size));
+            p /= size;
         }
-        if (!Reflector.class.isInstance(rotorr[0])) {
-            throw new EnigmaException("Reflector is not in the first position");
+    }
+
+    /**
+     * Return the number of key presses after which the positions of my
+     * rotors repeat, starting from their current positions (see cycle).
+     * Takes time proportional to the length of the sequence.
+     */
+    long period() {
+        return cycle(Long.MAX_VALUE)[1];
+    }
+
+    /**
+     * Return {TAIL, PERIOD} for the sequence of positions my rotors take
+     * from their current positions: after TAIL key presses, they enter a
+     * cycle of PERIOD positions.  TAIL is 0 unless the current positions
+     * cannot recur, as happens when the middle rotor of a double-stepping
+     * machine starts at its notch.  Throws an exception if TAIL + PERIOD
+     * exceeds LIMIT, which is detected after at most BRENT_STEPS * LIMIT
+     * steps.  Uses Brent's cycle detection on the packed positions (see
+     * positionKey), stepping copies of me.
+     */
+    long[] cycle(long limit) {
+        Machine hare = copy();
+        long tortoise = hare.positionKey();
+        hare.step();
+        long power = 1, period = 1, steps = 1;
+        while (hare.positionKey() != tortoise) {
+            if (steps / BRENT_STEPS > limit) {
+                throw error("rotor positions do not repeat within %d steps",
+                            limit);
+            }
+            if (power == period) {
+                tortoise = hare.positionKey();
+                power *= 2;
+                period = 0;
+            }
+            hare.step();
+            period += 1;
+            steps += 1;
         }
-        if (added.size() != rotors.length) {
-            String e = "Rotor is not initialized in configuration file";
-            throw new EnigmaException(e);
+        Machine lead = copy(), trail = copy();
+        for (long k = 0; k < period; k += 1) {
+            lead.step();
+        }
+        long tail;
+        for (tail = 0; lead.positionKey() != trail.positionKey();
+             tail += 1) {
+            lead.step();
+            trail.step();
+        }
+        if (tail + period > limit) {
+            throw error("rotor positions do not repeat within %d steps",
+                        limit);
+        }
+        return new long[] { tail, period };
+    }
+
+    /**
+     * Return the number of combinations of positions of my rotating
+     * rotors (Long.MAX_VALUE if that does not fit in a long), which
+     * bounds the tail plus the period of their positions (see cycle).
+     */
+    long positionCount() {
+        long result = 1;
+        int size = _alphabet.size();
+        for (int x = 0; x < rotorr.length; x += 1) {
+            if (_rotatingPlan[x]) {
+                if (result > Long.MAX_VALUE / size) {
+                    return Long.MAX_VALUE;
+                }
+                result *= size;
+            }
         }
+        return result;
+    }
+
+    /**
+     * Return the positions of my rotors other than the reflector packed
+     * into a long, the rightmost in the lowest bits.
+     */
+    private long positionKey() {
+        int bits = 32 - Integer.numberOfLeadingZeros(_alphabet.size() - 1);
+        if ((long) bits * (rotorr.length - 1) > Long.SIZE - 1) {
+            throw error("too many rotor positions to pack");
+        }
+        long key = 0;
+        for (int x = 1; x < rotorr.length; x += 1) {
+            key = (key << bits) | rotorr[x].setting();
+        }
+        return key;
+    }
+
+    /**
+     * Return the keystream of my current state (see Keystream).  Does
+     * not change my state.
+     */
+    Keystream keystream() {
+        return new Keystream(this);
+    }
+
+    /**
+     * Return the setting, in the form accepted by setRotors, of start
+     * position number INDEX (see setPosition).
+     */
+    String positionSetting(long index) {
+        return _spec.positionSetting(index);
     }
 
     /**
@@ -116,11 +350,110 @@ class Machine {
         }
     }
 
+    /**
+     * Advance my rotors as if N >= 0 characters had been converted, in
+     * time independent of N for ordinary machines (see Odometer).
+     */
+    void advanceBy(long n) {
+        int[] pos = positions();
+        odometer().advance(pos, n);
+        for (int x = 1; x < rotorr.length; x += 1) {
+            rotorr[x].set(pos[x]);
+        }
+    }
+
+    /**
+     * Return the setting (in the form accepted by setRotors) that my
+     * rotors will have after converting OFFSET >= 0 more characters.
+     * Does not change my state.
+     */
+    String stateAt(long offset) {
+        int[] pos = positions();
+        odometer().advance(pos, offset);
+        char[] setting = new char[rotorr.length - 1];
+        for (int x = 1; x < rotorr.length; x += 1) {
+            setting[x - 1] = _alphabet.toChar(pos[x]);
+        }
+        return new String(setting);
+    }
+
+    /**
+     * Return the current settings of my rotors, by slot.
+     */
+    int[] positions() {
+        int[] pos = new int[rotorr.length];
+        for (int x = 0; x < rotorr.length; x += 1) {
+            pos[x] = rotorr[x].setting();
+        }
+        return pos;
+    }
+
+    /**
+     * Return the stepping mechanism for my current rotors.
+     */
+    private Odometer odometer() {
+        if (_odometer == null) {
+            _odometer = new Odometer(rotorr);
+        }
+        return _odometer;
+    }
+
     /**
      * Set the plugboard to PLUGBOARD.
      */
     void setPlugboard(Permutation plugboard) {
-        _plugboarded = new Rotor("PB", plugboard);
+        _plugboarded = new Rotor("PB", plugboard, true);
+        clearComposite();
+    }
+
+    /**
+     * Select the composite-table engine iff ON.  In that mode, the whole
+     * path from plugboard through the reflector and back is computed once
+     * for each rotor position and cached, so that each character costs
+     * one step and one table lookup.  The results are identical to those
+     * of the ordinary rotor-by-rotor path.
+     */
+    void useCompositeTables(boolean on) {
+        if (!on) {
+            _composite = null;
+            return;
+        }
+        _stateBits = 32 - Integer.numberOfLeadingZeros(_alphabet.size() - 1);
+        if ((long) _stateBits * (numRotors() - 1) > Long.SIZE - 1) {
+            throw error("too many rotor positions for composite tables");
+        }
+        _composite = new SubstitutionCache(COMPOSITE_BUDGET
+                                           / _alphabet.size());
+    }
+
+    /**
+     * Discard any cached composite tables, which depend on the rotors
+     * inserted and the plugboard.
+     */
+    private void clearComposite() {
+        if (_composite != null) {
+            _composite.clear();
+        }
+    }
+
+    /**
+     * Return the composite substitution table for the current positions
+     * of my rotors, building and caching it if necessary.
+     */
+    private int[] compositeTable() {
+        long key = 0;
+        for (int x = 1; x < rotorr.length; x += 1) {
+            key = (key << _stateBits) | rotorr[x].setting();
+        }
+        int[] table = _composite.get(key);
+        if (table == null) {
+            table = new int[_alphabet.size()];
+            for (int c = 0; c < table.length; c += 1) {
+                table[c] = substitute(c);
+            }
+            _composite.put(key, table);
+        }
+        return table;
     }
 
     /**
@@ -130,38 +463,191 @@ class Machine {
      * the machine.
      */
     int convert(int c) {
-        int track = c;
-        boolean rot1Rotated = false;
-        ArrayList<Rotor> moved = new ArrayList<>();
-        track = _plugboarded.convertForward(c);
-        for (int x = 1; x <= numRotors() - 1; x += 1) {
-            if (rotorr[x].atNotch()) {
-                if (!moved.contains(rotorr[x - 1])) {
-                    rotorr[x - 1].advance();
-                    moved.add(rotorr[x - 1]);
-                }
-                if (rotorr[x].rotates() && rotorr[x - 1].rotates()) {
-                    if (!moved.contains(rotorr[x])) {
-                        rotorr[x].advance();
-                        moved.add(rotorr[x]);
-                    }
-                    if (x == numRotors() - 1) {
-                        rot1Rotated = true;
-                    }
+        step();
+        if (_composite != null) {
+            return compositeTable()[c];
+        }
+        return substitute(c);
+    }
+
+    /**
+     * Convert the LEN characters (as indices into my alphabet) IN[OFF],
+     * ..., IN[OFF + LEN - 1], storing the results into the corresponding
+     * elements of OUT and advancing the machine once per character.  IN
+     * and OUT may be the same array.
+     */
+    void convert(int[] in, int[] out, int off, int len) {
+        if (_composite != null) {
+            for (int x = off; x < off + len; x += 1) {
+                step();
+                out[x] = compositeTable()[in[x]];
+            }
+            return;
+        }
+        for (int x = off; x < off + len; x += 1) {
+            step();
+            out[x] = substitute(in[x]);
+        }
+    }
+
+    /**
+     * Convert the LEN characters MSG[OFF], ..., MSG[OFF + LEN - 1] in
+     * place, advancing the machine once per character.  All of them
+     * must be in my alphabet.
+     */
+    void convert(char[] msg, int off, int len) {
+        for (int x = off; x < off + len; x += 1) {
+            msg[x] = _alphabet.toChar(convert(_alphabet.toInt(msg[x])));
+        }
+    }
+
+    /**
+     * Convert the LEN bytes BUF[OFF], ..., BUF[OFF + LEN - 1] in place,
+     * each byte B being the character with index B & 0xff, advancing
+     * the machine once per byte.  My alphabet must have 256 characters
+     * (see ByteAlphabet).  Only the plugboard and the rightmost rotor
+     * are traversed per byte: the path through the other rotors, the
+     * reflector and back is one table, rebuilt when those rotors move,
+     * and between such moves only the rightmost rotor is stepped.
+     */
+    void convert(byte[] buf, int off, int len) {
+        if (_alphabet.size() != BYTE_VALUES) {
+            throw error("byte conversion needs a 256-character alphabet");
+        }
+        Rotor fast = rotorr[rotorr.length - 1];
+        Rotor plug = _plugboarded;
+        int x = off, end = off + len;
+        while (x < end) {
+            int run = Math.min(fastRun(), end - x);
+            if (run == 0) {
+                step();
+                buf[x] = convertByte(buf[x], plug, fast, coreTable());
+                x += 1;
+            } else {
+                int[] core = coreTable();
+                for (int stop = x + run; x < stop; x += 1) {
+                    fast.advance();
+                    buf[x] = convertByte(buf[x], plug, fast, core);
                 }
             }
         }
-        if (!rot1Rotated) {
-            rotorr[numRotors() - 1].advance();
+    }
+
+    /**
+     * Return the conversion of byte B through plugboard PLUG, rightmost
+     * rotor FAST and the rest of the path, CORE (see coreTable), and
+     * back, without moving any rotor.
+     */
+    private static byte convertByte(byte b, Rotor plug, Rotor fast,
+                                    int[] core) {
+        int c = plug.convertForward(b & BYTE_MASK);
+        c = fast.convertBackward(core[fast.convertForward(c)]);
+        return (byte) plug.convertBackward(c);
+    }
+
+    /**
+     * Return the number of steps, starting with the next, that will
+     * move only my rightmost rotor: 0 if some other rotor will move on
+     * the next step, and at most the alphabet size.
+     */
+    private int fastRun() {
+        Rotor[] rotors = rotorr;
+        boolean[][] notches = _notchPlan;
+        boolean[] rotating = _rotatingPlan;
+        int last = rotors.length - 1;
+        if (!rotating[last]) {
+            return 0;
+        }
+        for (int x = 1; x < last; x += 1) {
+            if (notches[x] != null && notches[x][rotors[x].setting()]
+                && rotating[x - 1]) {
+                return 0;
+            }
         }
-        for (int x = numRotors() - 1; x >= 0; x--) {
-            track = rotorr[x].convertForward(track);
+        int size = _alphabet.size();
+        boolean[] fastNotches = notches[last];
+        if (fastNotches == null) {
+            return size;
         }
-        for (int y = 1; y < numRotors(); y++) {
-            track = rotorr[y].convertBackward(track);
+        int s = rotors[last].setting();
+        int run;
+        for (run = 0; run < size && !fastNotches[s]; run += 1) {
+            s = s + 1 == size ? 0 : s + 1;
         }
-        track = _plugboarded.convertBackward(track);
-        return track;
+        return run;
+    }
+
+    /**
+     * Return the table giving the path from the left of my rightmost
+     * rotor through the others, the reflector and back, for their
+     * current positions, rebuilding it if they have moved.
+     */
+    private int[] coreTable() {
+        Rotor[] rotors = rotorr;
+        int last = rotors.length - 1;
+        boolean current = _core != null;
+        for (int x = 0; current && x < last; x += 1) {
+            current = _corePositions[x] == rotors[x].setting();
+        }
+        if (current) {
+            return _core;
+        }
+        if (_core == null) {
+            _core = new int[BYTE_VALUES];
+            _corePositions = new int[last];
+        }
+        for (int x = 0; x < last; x += 1) {
+            _corePositions[x] = rotors[x].setting();
+        }
+        for (int c = 0; c < BYTE_VALUES; c += 1) {
+            int track = c;
+            for (int x = last - 1; x >= 0; x -= 1) {
+                track = rotors[x].convertForward(track);
+            }
+            for (int y = 1; y < last; y += 1) {
+                track = rotors[y].convertBackward(track);
+            }
+            _core[c] = track;
+        }
+        return _core;
+    }
+
+    /**
+     * Convert the characters of MSG, all of which must be in my
+     * alphabet, storing the results in OUT starting at OUT[OFF].
+     */
+    void convert(CharSequence msg, char[] out, int off) {
+        for (int x = 0; x < msg.length(); x += 1) {
+            int c = convert(_alphabet.toInt(msg.charAt(x)));
+            out[off + x] = _alphabet.toChar(c);
+        }
+    }
+
+    /**
+     * Convert IN[OFF .. OFF + LEN - 1] into OUT as for
+     * convert(IN, OUT, OFF, LEN), splitting the work into chunks that
+     * are converted on POOL, each by a copy of me advanced to the
+     * chunk's starting offset.
+     */
+    void convertParallel(int[] in, int[] out, int off, int len,
+                         ForkJoinPool pool) {
+        pool.invoke(new ConversionTask(copy(), in, out, off, off,
+                                       off + len));
+        advanceBy(len);
+    }
+
+    /**
+     * Return a stream of the conversions of the characters (as indices
+     * into my alphabet) in MSG, which is parallel iff PARALLEL.  My
+     * rotors advance immediately as if MSG had been converted; the
+     * stream works from copies of me, and may be consumed at any time
+     * as long as MSG is not modified.
+     */
+    IntStream convertStream(int[] msg, boolean parallel) {
+        ConversionSpliterator result =
+            new ConversionSpliterator(copy(), msg, 0, msg.length);
+        advanceBy(msg.length);
+        return StreamSupport.intStream(result, parallel);
     }
 
     /**
@@ -169,11 +655,137 @@ class Machine {
      * the rotors accordingly.
      */
     String convert(String msg) {
-        return "";
+        char[] result = new char[msg.length()];
+        convert(msg, result, 0);
+        return new String(result);
+    }
+
+    /**
+     * Advance my rotors as for one key press.  A rotor at its notch
+     * moves the rotor to its left and, if that rotor also rotates,
+     * itself; the rightmost rotor always moves.  No rotor moves more
+     * than once, and all notches are examined before any rotor moves.
+     * The stepping plan compiled by insertRotors gives the notch masks
+     * and which slots rotate, so this takes one array load per slot.
+     */
+    void step() {
+        Rotor[] rotors = rotorr;
+        boolean[][] notches = _notchPlan;
+        boolean[] rotating = _rotatingPlan;
+        boolean right = true;
+        for (int x = rotors.length - 1; x >= 0; x -= 1) {
+            Rotor r = rotors[x];
+            boolean notch = notches[x] != null && notches[x][r.setting()];
+            if (rotating[x] && (right || notch && rotating[x - 1])) {
+                r.advance();
+            }
+            right = notch;
+        }
+    }
+
+    /**
+     * Return the result of passing C (taken modulo the alphabet size)
+     * through the plugboard, the rotors from right to left, the
+     * reflector, and back, without moving any rotor.
+     */
+    int substitute(int c) {
+        Rotor[] rotors = rotorr;
+        if (c < 0 || c >= _alphabet.size()) {
+            c = _plugboarded.permutation().wrap(c);
+        }
+        int track = _plugboarded.convertForward(c);
+        for (int x = rotors.length - 1; x >= 0; x -= 1) {
+            track = rotors[x].convertForward(track);
+        }
+        for (int y = 1; y < rotors.length; y += 1) {
+            track = rotors[y].convertBackward(track);
+        }
+        return _plugboarded.convertBackward(track);
     }
 
+    /**
+     * The unchanging description of my kind of machine.
+     */
+    private final MachineSpec _spec;
+
+    /**
+     * _slotIndex[X] is the index in aRotors of the rotor in slot X.
+     */
+    private final int[] _slotIndex;
+
+    /**
+     * True iff I insert the rotors of aRotors themselves, rather than
+     * copies (see copy()).
+     */
+    private final boolean _ownsCatalog;
+
     /**
      * Common alphabet of my rotors.
      */
     private final Alphabet _alphabet;
+
+    /**
+     * The notch masks of my stepping plan (see compileStepping):
+     * _notchPlan[X] is that of the rotor in slot X, or null if its
+     * notches never engage.  Replaced, never modified, by insertRotors,
+     * so copies may share it.
+     */
+    private boolean[][] _notchPlan;
+
+    /**
+     * _rotatingPlan[X] is true iff the rotor in slot X rotates.
+     * Replaced, never modified, by insertRotors.
+     */
+    private boolean[] _rotatingPlan;
+
+    /**
+     * Stepping mechanism for the inserted rotors, or null if not yet
+     * built.
+     */
+    private Odometer _odometer;
+
+    /**
+     * Cache of composite substitution tables, keyed by rotor positions,
+     * or null if the composite-table engine is not in use.
+     */
+    private SubstitutionCache _composite;
+
+    /**
+     * Number of bits used for each rotor position in composite keys.
+     */
+    private int _stateBits;
+
+    /**
+     * Path through all my rotors but the rightmost and back, for the
+     * settings in _corePositions, or null if not yet built for the
+     * inserted rotors (see coreTable).
+     */
+    private int[] _core;
+
+    /**
+     * _corePositions[X] is the setting of the rotor in slot X for which
+     * _core was built.
+     */
+    private int[] _corePositions;
+
+    /**
+     * Brent's cycle detection takes fewer than BRENT_STEPS times the
+     * tail plus the period steps: the tortoise is moved to the hare at
+     * steps 1, 2, 4, ..., and the first such power of two that is at
+     * least both the tail and the period (so less than twice their sum)
+     * finds the cycle within one period more.
+     */
+    private static final long BRENT_STEPS = 3;
+
+    /**
+     * Total number of table entries the composite-table engine may
+     * cache.
+     */
+    private static final int COMPOSITE_BUDGET = 1 << 22;
+
+    /**
+     * Number of byte values, and the mask selecting the low byte of an
+     * int.
+     */
+    private static final int BYTE_VALUES = 256, BYTE_MASK = 0xff;
 }
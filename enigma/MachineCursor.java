@@ -0,0 +1,184 @@
+package enigma;
+
+/**
+ * The changing state of one machine of a given MachineSpec: its rotor
+ * order, rotor settings and plugboard.  The state is held in a few
+ * small arrays, so that snapshot() takes time proportional to the
+ * number of slots, and conversion uses the spec's RotorTables, giving
+ * the same results as a Machine in the same state.  A cursor must not
+ * be used by two threads at once, but any number of cursors may share
+ * a spec.
+ *
+ * @author John Schulz
+ */
+class MachineCursor {
+
+    /**
+     * A cursor for machines described by SPEC, with no rotors inserted
+     * and an empty plugboard.
+     */
+    MachineCursor(MachineSpec spec) {
+        _spec = spec;
+        _tables = spec.tables();
+        int n = spec.numRotors(), size = spec.alphabet().size();
+        _bases = new int[n];
+        _positions = new int[n];
+        _rotating = new boolean[n];
+        _plugForward = _plugBackward = new int[size];
+        for (int c = 0; c < size; c += 1) {
+            _plugForward[c] = c;
+        }
+    }
+
+    /**
+     * Return a new cursor in the same state as me, which changes
+     * independently of me.
+     */
+    MachineCursor snapshot() {
+        return new MachineCursor(this);
+    }
+
+    /** A copy of OTHER. */
+    private MachineCursor(MachineCursor other) {
+        _spec = other._spec;
+        _tables = other._tables;
+        _bases = other._bases.clone();
+        _positions = other._positions.clone();
+        _rotating = other._rotating.clone();
+        _plugForward = other._plugForward;
+        _plugBackward = other._plugBackward;
+        _inserted = other._inserted;
+    }
+
+    /** Return the spec of my machine. */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /**
+     * Insert the rotors named ROTORS (ROTORS[0] naming the reflector),
+     * as for Machine.insertRotors, all at setting 0.
+     */
+    void insertRotors(String[] rotors) {
+        int[] indices = _spec.rotorIndices(rotors);
+        int size = _spec.alphabet().size();
+        for (int x = 0; x < indices.length; x += 1) {
+            _bases[x] = indices[x] * size;
+            _positions[x] = 0;
+            _rotating[x] = _spec.moving(indices[x]);
+        }
+        _inserted = true;
+    }
+
+    /**
+     * Set my rotors according to SETTING, as for Machine.setRotors.
+     */
+    void setRotors(String setting) {
+        checkInserted();
+        if (setting.length() != _positions.length - 1) {
+            String e = "Rotor Length doesn't match settings length";
+            throw new EnigmaException(e);
+        }
+        Alphabet alpha = _spec.alphabet();
+        for (int x = 0; x < setting.length(); x += 1) {
+            _positions[x + 1] = alpha.toInt(setting.charAt(x));
+        }
+    }
+
+    /** Set the plugboard to PLUGBOARD. */
+    void setPlugboard(Permutation plugboard) {
+        int size = _spec.alphabet().size();
+        int[] forward = new int[size], backward = new int[size];
+        for (int c = 0; c < size; c += 1) {
+            forward[c] = plugboard.permute(c);
+            backward[c] = plugboard.invert(c);
+        }
+        _plugForward = forward;
+        _plugBackward = backward;
+    }
+
+    /**
+     * Put me in the state of rotors with catalog indices INDICES[0 ..
+     * numRotors() - 1], at settings POSITIONS, with plugboard PLUGBOARD.
+     * The rotor order is not checked.
+     */
+    void setState(int[] indices, int[] positions, Permutation plugboard) {
+        int size = _spec.alphabet().size();
+        for (int x = 0; x < _bases.length; x += 1) {
+            _bases[x] = indices[x] * size;
+            _positions[x] = positions[x];
+            _rotating[x] = _spec.moving(indices[x]);
+        }
+        _inserted = true;
+        setPlugboard(plugboard);
+    }
+
+    /** Return the current settings of my rotors, by slot. */
+    int[] positions() {
+        return _positions.clone();
+    }
+
+    /**
+     * Return the result of converting C (an index into the alphabet),
+     * after first advancing the rotors, as for Machine.convert.
+     */
+    int convert(int c) {
+        checkInserted();
+        int n = _bases.length;
+        _tables.step(_bases, _positions, _rotating, n);
+        return _plugBackward[_tables.substitute(_bases, _positions, n,
+                                                _plugForward[c])];
+    }
+
+    /**
+     * Convert IN[OFF .. OFF + LEN - 1] into the corresponding elements of
+     * OUT, as for Machine.convert.  IN and OUT may be the same array.
+     */
+    void convert(int[] in, int[] out, int off, int len) {
+        checkInserted();
+        RotorTables tables = _tables;
+        int[] bases = _bases, positions = _positions,
+            plugForward = _plugForward, plugBackward = _plugBackward;
+        boolean[] rotating = _rotating;
+        int n = bases.length;
+        for (int x = off; x < off + len; x += 1) {
+            tables.step(bases, positions, rotating, n);
+            out[x] = plugBackward[tables.substitute(bases, positions, n,
+                                                    plugForward[in[x]])];
+        }
+    }
+
+    /**
+     * Return the conversion of MSG, all of whose characters must be in
+     * the alphabet.
+     */
+    String convert(String msg) {
+        Alphabet alpha = _spec.alphabet();
+        char[] result = new char[msg.length()];
+        for (int x = 0; x < result.length; x += 1) {
+            result[x] = alpha.toChar(convert(alpha.toInt(msg.charAt(x))));
+        }
+        return new String(result);
+    }
+
+    /** Check that rotors have been inserted. */
+    private void checkInserted() {
+        if (!_inserted) {
+            throw new EnigmaException("No setting declared.");
+        }
+    }
+
+    /** The kind of machine. */
+    private final MachineSpec _spec;
+    /** Its compiled catalog. */
+    private final RotorTables _tables;
+    /** Bases (see RotorTables) and settings of my rotors, by slot. */
+    private final int[] _bases, _positions;
+    /** _rotating[X] iff the rotor in slot X rotates. */
+    private final boolean[] _rotating;
+    /** The plugboard and its inverse, which are never modified once
+     *  set, and so may be shared with snapshots. */
+    private int[] _plugForward, _plugBackward;
+    /** True iff rotors have been inserted. */
+    private boolean _inserted;
+}
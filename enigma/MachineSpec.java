@@ -0,0 +1,249 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * The unchanging description of a kind of Enigma machine: its alphabet,
+ * numbers of slots and pawls, and catalog of rotors, whose permutations
+ * are also compiled into RotorTables.  A spec is not modified after it
+ * is built and may be shared by any number of threads.  Only the
+ * wirings and notches of its catalog rotors are used, never their
+ * settings; the state of a particular machine (rotor order, settings
+ * and plugboard) is held by a Machine or, more cheaply, by a
+ * MachineCursor.
+ *
+ * @author John Schulz
+ */
+class MachineSpec {
+
+    /**
+     * The spec of machines with alphabet ALPHA, 1 < NUMROTORS rotor
+     * slots, 0 <= PAWLS < NUMROTORS pawls, and the rotors in CATALOG.
+     */
+    MachineSpec(Alphabet alpha, int numRotors, int pawls,
+                Collection<Rotor> catalog) {
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _numPawls = pawls;
+        _catalog = Collections.unmodifiableList(new ArrayList<>(catalog));
+        int count = _catalog.size();
+        _byName = new HashMap<>();
+        _byUpperName = new HashMap<>();
+        _moving = new boolean[count];
+        _reflector = new boolean[count];
+        for (int k = 0; k < count; k += 1) {
+            Rotor r = _catalog.get(k);
+            _moving[k] = r instanceof MovingRotor;
+            _reflector[k] = r instanceof Reflector;
+            String upper = r.name().toUpperCase();
+            _byUpperName.put(upper,
+                             _byUpperName.containsKey(upper) ? AMBIGUOUS : k);
+        }
+        for (int k = 0; k < count; k += 1) {
+            String name = _catalog.get(k).name();
+            if (_byUpperName.get(name.toUpperCase()) == k) {
+                _byName.put(name, k);
+            }
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return my number of rotor slots. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return my number of pawls. */
+    int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return my catalog of rotors, which may not be modified. */
+    List<Rotor> catalog() {
+        return _catalog;
+    }
+
+    /** Return true iff catalog rotor K is a MovingRotor. */
+    boolean moving(int k) {
+        return _moving[k];
+    }
+
+    /** Return true iff catalog rotor K is a Reflector. */
+    boolean reflector(int k) {
+        return _reflector[k];
+    }
+
+    /** Return the tables of my catalog, building them on first use. */
+    RotorTables tables() {
+        RotorTables result = _tables;
+        if (result == null) {
+            result = _tables = new RotorTables(this);
+        }
+        return result;
+    }
+
+    /**
+     * Return the index in my catalog of the rotor named NAME, ignoring
+     * case, or -1 if there is no such rotor (or more than one).
+     */
+    int rotorIndex(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer k = _byName.get(name);
+        if (k == null) {
+            k = _byUpperName.get(name.toUpperCase());
+        }
+        return k == null ? -1 : k;
+    }
+
+    /**
+     * Return the catalog indices of the rotors named ROTORS, which must
+     * be a valid rotor order: numRotors() names, the first naming a
+     * reflector, numPawls() of them naming moving rotors.
+     */
+    int[] rotorIndices(String[] rotors) {
+        if (rotors.length != _numRotors) {
+            throw error("wrong number of rotors");
+        }
+        int[] indices = new int[rotors.length];
+        int actualPawls = 0;
+        boolean unknown = false;
+        for (int x = 0; x < rotors.length; x += 1) {
+            indices[x] = rotorIndex(rotors[x]);
+            if (indices[x] < 0) {
+                unknown = true;
+            } else if (_moving[indices[x]]) {
+                actualPawls += 1;
+            }
+        }
+        if (actualPawls != _numPawls) {
+            String e = "Amount of pawls does not match + "
+                    + "the number of moving Rotors";
+            throw new EnigmaException(e);
+        }
+        if (indices[0] < 0 || !_reflector[indices[0]]) {
+            throw new EnigmaException("Reflector is not in the first position");
+        }
+        if (unknown) {
+            String e = "Rotor is not initialized in configuration file";
+            throw new EnigmaException(e);
+        }
+        return indices;
+    }
+
+    /**
+     * Return the rotor orders my catalog allows: the names of a
+     * reflector, then numRotors() - numPawls() - 1 distinct non-moving
+     * rotors, then numPawls() distinct moving rotors.
+     */
+    List<String[]> rotorOrders() {
+        ArrayList<String> reflectors = new ArrayList<>(),
+            fixed = new ArrayList<>(), moving = new ArrayList<>();
+        for (int k = 0; k < _catalog.size(); k += 1) {
+            String name = _catalog.get(k).name();
+            if (_reflector[k]) {
+                reflectors.add(name);
+            } else if (_moving[k]) {
+                moving.add(name);
+            } else {
+                fixed.add(name);
+            }
+        }
+        int numFixed = _numRotors - _numPawls - 1;
+        ArrayList<String[]> orders = new ArrayList<>();
+        for (String reflector : reflectors) {
+            String[] order = new String[_numRotors];
+            order[0] = reflector;
+            addOrders(orders, order, 1, numFixed + 1, fixed, moving);
+        }
+        return orders;
+    }
+
+    /**
+     * Add to ORDERS every completion of ORDER, whose slots before X are
+     * filled, taking distinct rotors from FIXED for the slots before
+     * FIRSTMOVING and from MOVING for the rest.
+     */
+    private static void addOrders(List<String[]> orders, String[] order,
+                                  int x, int firstMoving, List<String> fixed,
+                                  List<String> moving) {
+        if (x == order.length) {
+            orders.add(order.clone());
+            return;
+        }
+        List<String> choices = x < firstMoving ? fixed : moving;
+        for (int k = 0; k < choices.size(); k += 1) {
+            String name = choices.get(k);
+            if (name == null) {
+                continue;
+            }
+            choices.set(k, null);
+            order[x] = name;
+            addOrders(orders, order, x + 1, firstMoving, fixed, moving);
+            choices.set(k, name);
+        }
+    }
+
+    /**
+     * Return the number of start positions of my rotors (the alphabet
+     * size to the power numRotors() - 1).
+     */
+    long numPositions() {
+        long result = 1;
+        for (int x = 1; x < _numRotors; x += 1) {
+            if (result > Long.MAX_VALUE / _alphabet.size()) {
+                throw error("too many rotor positions");
+            }
+            result *= _alphabet.size();
+        }
+        return result;
+    }
+
+    /**
+     * Return the setting, in the form accepted by Machine.setRotors, of
+     * start position number INDEX (see Machine.setPosition).
+     */
+    String positionSetting(long index) {
+        int size = _alphabet.size();
+        char[] setting = new char[_numRotors - 1];
+        long p = index;
+        for (int x = setting.length - 1; x >= 0; x -= 1) {
+            setting[x] = _alphabet.toChar((int) (p % size));
+            p /= size;
+        }
+        return new String(setting);
+    }
+
+    /** Common alphabet of my rotors. */
+    private final Alphabet _alphabet;
+    /** Numbers of rotor slots and pawls. */
+    private final int _numRotors, _numPawls;
+    /** The available rotors. */
+    private final List<Rotor> _catalog;
+    /** Indices in _catalog of my rotors by name, for the names that
+     *  identify a rotor without regard to case. */
+    private final HashMap<String, Integer> _byName;
+    /** Indices in _catalog of my rotors by upper-case name, or AMBIGUOUS
+     *  for names shared by more than one rotor. */
+    private final HashMap<String, Integer> _byUpperName;
+    /** _moving[K] (resp. _reflector[K]) is true iff rotor K of _catalog
+     *  is a MovingRotor (resp. Reflector). */
+    private final boolean[] _moving, _reflector;
+    /** Compiled tables of _catalog, or null if not yet built.  Building
+     *  them twice in a race is harmless. */
+    private volatile RotorTables _tables;
+
+    /** Index of a name that matches more than one rotor. */
+    private static final int AMBIGUOUS = -1;
+}
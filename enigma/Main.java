@@ -2,12 +2,33 @@ package enigma;
 
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
 
 import static enigma.EnigmaException.error;
 
@@ -27,7 +48,10 @@ public final class Main {
      * input.  ARGS[2] is optional; when present, it names an output
      * file for processed messages.  Otherwise, output goes to the
      * standard output. Exits normally if there are no errors in the input;
-     * otherwise with code 1.
+     * otherwise with code 1.  When both files are given, they are
+     * memory-mapped if the alphabet and default character set allow it
+     * (see processMapped).  ARGS may begin with options of the form
+     * --NAME=VALUE (see parseOptions).
      */
     public static void main(String... args) {
         try {
@@ -43,18 +67,67 @@ public final class Main {
      * Check ARGS and open the necessary files (see comment on main).
      */
     Main(String[] args) {
+        args = Arrays.copyOfRange(args, parseOptions(args), args.length);
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        if (_compileTo != null && args.length > 1) {
+            throw error("--compile takes only a configuration file");
+        }
+        if (_serveAt != null && args.length > 1) {
+            throw error("--serve takes only a configuration file");
+        }
+        if ((_key != null) != _binary) {
+            throw error("--binary and --key must be given together");
+        }
+        if (_keystream && _threads > 0) {
+            throw error("--keystream cannot be used with --threads");
+        }
+        if (_binary && (_compileTo != null || _serveAt != null
+                        || _crib != null || _solve > 0 || _threads > 0
+                        || _keystream)) {
+            throw error("--binary takes no other options but --key");
+        }
+        if (Catalog.isCatalog(args[0])) {
+            _catalog = args[0];
+        } else {
+            _config = getInput(args[0]);
+        }
+
+        if (_binary) {
+            if (args.length > 1) {
+                _inChannel = getChannel(args[1], StandardOpenOption.READ);
+            } else {
+                _inChannel = new FileInputStream(FileDescriptor.in)
+                    .getChannel();
+            }
+            if (args.length > 2) {
+                _outChannel =
+                    getChannel(args[2], StandardOpenOption.CREATE,
+                               StandardOpenOption.TRUNCATE_EXISTING,
+                               StandardOpenOption.WRITE);
+            } else {
+                _outChannel = new FileOutputStream(FileDescriptor.out)
+                    .getChannel();
+            }
+            return;
+        }
+
+        if (args.length > 2 && regularFiles(args[1], args[2])) {
+            _inChannel = getChannel(args[1], StandardOpenOption.READ);
+            _outChannel =
+                getChannel(args[2], StandardOpenOption.CREATE,
+                           StandardOpenOption.TRUNCATE_EXISTING,
+                           StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return;
+        }
 
         if (args.length > 1) {
-            _input = getInput(args[1]);
+            _input = getReader(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = new InputStreamReader(System.in, Charset.defaultCharset());
         }
-
         if (args.length > 2) {
             _output = getOutput(args[2]);
         } else {
@@ -62,6 +135,151 @@ public final class Main {
         }
     }
 
+    /**
+     * Process the options at the start of ARGS, returning the number of
+     * them.  The options are
+     *     --threads=N   convert messages on N worker threads, which
+     *                   requires each message to be preceded by its own
+     *                   settings (see BatchProcessor).  Batching
+     *                   costs time of its own, so this is no faster
+     *                   than the default unless several processors
+     *                   are free.
+     *     --compile=FILE  instead of converting messages, write the
+     *                   configuration as a compiled catalog to FILE (see
+     *                   Catalog).  A catalog may be given in place of a
+     *                   configuration file.
+     *     --crib=TEXT   instead of converting the input, search for
+     *                   the keys under which TEXT enciphers to the input
+     *                   (see Bombe), on --threads threads (default: one
+     *                   per processor).
+     *     --crib-offset=N the crib is at position N of the input
+     *                   (default 0).
+     *     --solve[=N]   instead of converting the input, search for the
+     *                   N (default 1) most likely keys of the ciphertext
+     *                   in the input, without a crib (see Solver), on
+     *                   --threads threads (default: one per processor).
+     *     --ngrams=FILE score --solve decryptions with the n-gram
+     *                   statistics of the sample text in FILE (default:
+     *                   English letter frequencies, if the alphabet has
+     *                   the letters A-Z).
+     *     --serve=ADDRESS instead of converting the input, serve clients
+     *                   connecting to ADDRESS, which is a TCP port on the
+     *                   loopback interface or unix:PATH (see Server).
+     *     --binary      convert the input as raw bytes, with no settings
+     *                   lines, character decoding or grouping, under a
+     *                   configuration with the byte alphabet (see
+     *                   ByteAlphabet and processBinary).
+     *     --key=SETTINGS the settings for --binary: rotor names, setting
+     *                   and plugboard as on a settings line (the '*'
+     *                   may be omitted), in hexadecimal notation.
+     *     --keystream   convert messages with the precomputed keystream
+     *                   of each settings line (see Keystream), which
+     *                   pays when many messages share a few keys.
+     *                   The keystreams of recently used settings are
+     *                   kept, using up to 64 MB (more while a new one is
+     *                   computed), and the least recently used is
+     *                   dropped when that is exceeded.
+     */
+    private int parseOptions(String[] args) {
+        int n;
+        for (n = 0; n < args.length && args[n].startsWith("--"); n += 1) {
+            String opt = args[n];
+            int eq = opt.indexOf('=');
+            String name = eq == -1 ? opt : opt.substring(0, eq);
+            String value = eq == -1 ? null : opt.substring(eq + 1);
+            switch (name) {
+            case "--threads":
+                _threads = intOption(name, value, 1);
+                break;
+            case "--compile":
+                if (value == null || value.isEmpty()) {
+                    throw error("--compile requires a file name");
+                }
+                _compileTo = value;
+                break;
+            case "--crib":
+                if (value == null || value.isEmpty()) {
+                    throw error("--crib requires a crib");
+                }
+                _crib = value;
+                break;
+            case "--crib-offset":
+                _cribOffset = intOption(name, value, 0);
+                break;
+            case "--solve":
+                _solve = value == null ? 1 : intOption(name, value, 1);
+                break;
+            case "--ngrams":
+                if (value == null || value.isEmpty()) {
+                    throw error("--ngrams requires a file name");
+                }
+                _ngrams = value;
+                break;
+            case "--serve":
+                if (value == null || value.isEmpty()) {
+                    throw error("--serve requires an address");
+                }
+                _serveAt = value;
+                break;
+            case "--binary":
+                _binary = true;
+                break;
+            case "--keystream":
+                _keystream = true;
+                break;
+            case "--key":
+                if (value == null || value.isEmpty()) {
+                    throw error("--key requires settings");
+                }
+                _key = value;
+                break;
+            default:
+                throw error("unknown option: %s", opt);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Return the value of option NAME, whose text is VALUE, as an
+     * integer that must be at least MIN.
+     */
+    private static int intOption(String name, String value, int min) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= min) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
+        }
+        throw error("%s requires an integer value of at least %d",
+                    name, min);
+    }
+
+    /**
+     * Return true iff the file named INPUT is a regular file and the
+     * file named OUTPUT is one or does not yet exist, so that both may
+     * be opened as FileChannels and mapped (see processMapped).  Pipes,
+     * FIFOs and devices such as /dev/stdout cannot be mapped.
+     */
+    private static boolean regularFiles(String input, String output) {
+        Path out = Paths.get(output);
+        return Files.isRegularFile(Paths.get(input))
+            && (Files.isRegularFile(out) || Files.notExists(out));
+    }
+
+    /**
+     * Return a PrintStream writing to the file named NAME.
+     */
+    private PrintStream getOutput(String name) {
+        try {
+            return new PrintStream(new FileOutputStream(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
     /**
      * Return a Scanner reading from the file named NAME.
      */
@@ -74,57 +292,422 @@ public final class Main {
     }
 
     /**
-     * Return a PrintStream writing to the file named NAME.
+     * Return a Reader reading from the file named NAME.
      */
-    private PrintStream getOutput(String name) {
+    private Reader getReader(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new InputStreamReader(new FileInputStream(name),
+                                         Charset.defaultCharset());
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
+    /**
+     * Return a FileChannel for the file named NAME, opened with OPTIONS.
+     */
+    private FileChannel getChannel(String name,
+                                   StandardOpenOption... options) {
+        try {
+            return FileChannel.open(Paths.get(name), options);
+        } catch (IOException | UnsupportedOperationException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
     /**
      * Configure an Enigma machine from the contents of configuration
      * file _config and apply it to the messages in _input, sending the
      * results to _output.
      */
-    private void process() {
-        Machine m = readConfig();
-        String settings = "";
-        boolean setup = false;
-        while (_input.hasNextLine()) {
-            settings = _input.nextLine();
-            if (settings.equals("")) {
-                _output.println();
-            } else if (settings.charAt(0) == '*') {
-                setup = true;
-                setUp(m, settings);
-                int c = 1;
-            } else {
-                if (!setup) {
-                    throw new EnigmaException("No setting declared.");
+    void process() {
+        Machine m;
+        if (Metrics.ENABLED) {
+            long start = System.nanoTime();
+            m = readConfig();
+            Metrics.METRICS.config(System.nanoTime() - start);
+        } else {
+            m = readConfig();
+        }
+        if (_compileTo != null) {
+            Catalog.write(m, _compileTo);
+            return;
+        }
+        if (_serveAt != null) {
+            Server server = new Server(m, _alphabet, _serveAt);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            System.err.printf("Listening on %s%n", server.address());
+            server.serve();
+            return;
+        }
+        try {
+            if (_binary) {
+                processBinary(m);
+                return;
+            }
+            if (_inChannel != null && mappable() && _crib == null
+                && _solve == 0) {
+                processMapped(m);
+                return;
+            }
+            if (_inChannel != null) {
+                _input = Channels.newReader(_inChannel,
+                                            Charset.defaultCharset());
+                _output =
+                    new PrintStream(Channels.newOutputStream(_outChannel));
+            }
+            Writer writer =
+                new OutputStreamWriter(_output, Charset.defaultCharset());
+            if (_crib != null) {
+                findKeys(m, writer);
+                writer.flush();
+                return;
+            }
+            if (_solve > 0) {
+                solve(m, writer);
+                writer.flush();
+                return;
+            }
+            InputSink sink = newSink(m, writer);
+            try {
+                processInput(sink);
+            } finally {
+                sink.close();
+                writer.flush();
+            }
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+    }
+
+    /**
+     * Search for the keys of M under which _crib enciphers to the text
+     * of _input at position _cribOffset (see Bombe), writing a settings
+     * line for each candidate to OUTPUT and statistics to the standard
+     * error.  Characters of the input and crib outside the alphabet
+     * (after conversion to upper case) are ignored.
+     */
+    private void findKeys(Machine m, Writer output) throws IOException {
+        Bombe bombe = new Bombe(m, alphabetOnly(readAll(_input)),
+                                alphabetOnly(_crib), _cribOffset);
+        ForkJoinPool pool = newPool();
+        long start = System.nanoTime();
+        List<Bombe.Candidate> found;
+        try {
+            found = bombe.search(pool);
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        for (Bombe.Candidate c : found) {
+            output.write(c + LINE_SEPARATOR);
+        }
+        System.err.printf("Tried %d keys in %.3f s (%.0f keys/s); "
+                          + "%d candidates%n", bombe.keysTried(), seconds,
+                          bombe.keysTried() / seconds, found.size());
+    }
+
+    /**
+     * Search for the _solve most likely keys of M for the ciphertext in
+     * _input (see Solver), writing to OUTPUT each key as a settings line
+     * followed by the decryption in groups of five, and statistics to the
+     * standard error.  Characters of the input outside the alphabet
+     * (after conversion to upper case) are ignored.
+     */
+    private void solve(Machine m, Writer output) throws IOException {
+        NgramTable ngrams;
+        if (_ngrams != null) {
+            try (Reader sample = getReader(_ngrams)) {
+                ngrams = NgramTable.train(_alphabet,
+                                          alphabetOnly(readAll(sample)));
+            }
+        } else {
+            ngrams = NgramTable.english(_alphabet);
+        }
+        Solver solver = new Solver(m, alphabetOnly(readAll(_input)), ngrams);
+        ForkJoinPool pool = newPool();
+        long start = System.nanoTime();
+        List<Solver.Solution> found;
+        try {
+            found = solver.solve(pool, _solve);
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        for (Solver.Solution s : found) {
+            output.write(s + LINE_SEPARATOR);
+            String text = s.plaintext();
+            for (int x = 0; x < text.length();
+                 x += MessageProcessor.GROUP_SIZE) {
+                int end = Math.min(x + MessageProcessor.GROUP_SIZE,
+                                   text.length());
+                output.write(text, x, end - x);
+                output.write(end < text.length() ? " " : LINE_SEPARATOR);
+            }
+        }
+        System.err.printf("Tried %d keys in %.3f s (%.0f keys/s)%n",
+                          solver.keysTried(), seconds,
+                          solver.keysTried() / seconds);
+    }
+
+    /**
+     * Return the pool on which to run key searches: one of _threads
+     * threads, or one per processor if _threads is 0.
+     */
+    private ForkJoinPool newPool() {
+        return new ForkJoinPool(_threads > 0 ? _threads
+                                : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Return the rest of the text of INPUT.
+     */
+    private static String readAll(Reader input) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buf = new char[MessageProcessor.BUFFER_SIZE];
+        for (int n = input.read(buf); n != -1; n = input.read(buf)) {
+            text.append(buf, 0, n);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Return the characters of TEXT, converted to upper case, that are
+     * in the alphabet.
+     */
+    private String alphabetOnly(String text) {
+        StringBuilder result = new StringBuilder();
+        String upper = text.toUpperCase();
+        for (int x = 0; x < upper.length(); x += 1) {
+            if (_alphabet.contains(upper.charAt(x))) {
+                result.append(upper.charAt(x));
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Return the processor that converts messages with M and writes the
+     * results to OUTPUT: a BatchProcessor if worker threads were
+     * requested, else a MessageProcessor.
+     */
+    private InputSink newSink(Machine m, Writer output) {
+        if (_threads > 0) {
+            return new BatchProcessor(m, _alphabet, output, _threads);
+        }
+        MessageProcessor result = new MessageProcessor(m, _alphabet, output);
+        result.useKeystreams(_keystream);
+        return result;
+    }
+
+    /**
+     * Return true iff the input and output files can be processed as
+     * mapped bytes: the default character set must encode ASCII as
+     * single bytes and every character of the alphabet must be ASCII,
+     * so that output is pure ASCII.
+     */
+    private boolean mappable() {
+        Charset cs = Charset.defaultCharset();
+        if (!cs.equals(StandardCharsets.UTF_8)
+            && !cs.equals(StandardCharsets.ISO_8859_1)
+            && !cs.equals(StandardCharsets.US_ASCII)) {
+            return false;
+        }
+        for (int x = 0; x < _alphabet.size(); x += 1) {
+            if (_alphabet.toChar(x) >= MessageProcessor.ASCII_SIZE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply M to the input file by mapping it MAP_WINDOW bytes at a time
+     * and feeding the bytes straight into the line processor.  ASCII
+     * bytes are characters; other bytes are decoded according to the
+     * default character set.  Output is written into mapped windows of
+     * the output file, which is truncated to its final length at the end.
+     */
+    private void processMapped(Machine m) throws IOException {
+        Charset cs = Charset.defaultCharset();
+        _utf8 = cs.equals(StandardCharsets.UTF_8);
+        _latin1 = cs.equals(StandardCharsets.ISO_8859_1);
+        long size = _inChannel.size();
+        Writer writer =
+            new MappedFileWriter(_outChannel,
+                                 size + size / MessageProcessor.GROUP_SIZE
+                                 + MessageProcessor.BUFFER_SIZE);
+        InputSink sink = newSink(m, writer);
+        try {
+            for (long pos = 0; pos < size; pos += MAP_WINDOW) {
+                MappedByteBuffer in =
+                    _inChannel.map(FileChannel.MapMode.READ_ONLY, pos,
+                                   Math.min(MAP_WINDOW, size - pos));
+                while (in.hasRemaining()) {
+                    byte b = in.get();
+                    if (b >= 0 && _pendingBytes == 0) {
+                        sink.feed((char) b);
+                    } else {
+                        feedByte(sink, b);
+                    }
                 }
-                String ret = "";
-                settings = settings.toUpperCase();
-                for (int x = 0; x < settings.length(); x += 1) {
-                    char next = settings.charAt(x);
-                    if (_alphabet.contains(next)) {
-                        int z = m.convert(_alphabet.toInt(next));
-                        char c = _alphabet.toChar(z);
-                        ret += Character.toString(c);
+            }
+            if (_pendingBytes > 0) {
+                _pendingBytes = 0;
+                sink.feed(REPLACEMENT);
+            }
+            sink.finish();
+        } finally {
+            sink.close();
+            writer.close();
+            _inChannel.close();
+        }
+    }
+
+    /**
+     * Feed the byte B of a non-ASCII character (or an ASCII byte that
+     * interrupts an incomplete UTF-8 sequence) to SINK.  Malformed
+     * sequences become REPLACEMENT.
+     */
+    private void feedByte(InputSink sink, byte b) throws IOException {
+        int u = b & BYTE_MASK;
+        if (_latin1) {
+            sink.feed((char) u);
+            return;
+        } else if (!_utf8) {
+            sink.feed(REPLACEMENT);
+            return;
+        }
+        if (_pendingBytes > 0) {
+            if ((u & UTF8_TAG_MASK) == UTF8_CONTINUATION) {
+                _codePoint = (_codePoint << UTF8_BITS)
+                    | (u & ~UTF8_TAG_MASK);
+                _pendingBytes -= 1;
+                if (_pendingBytes == 0) {
+                    if (Character.isValidCodePoint(_codePoint)
+                        && _codePoint >= _minCodePoint
+                        && (_codePoint < Character.MIN_SURROGATE
+                            || _codePoint > Character.MAX_SURROGATE)) {
+                        if (Character.isBmpCodePoint(_codePoint)) {
+                            sink.feed((char) _codePoint);
+                        } else {
+                            sink.feed(Character.highSurrogate(_codePoint));
+                            sink.feed(Character.lowSurrogate(_codePoint));
+                        }
+                    } else {
+                        sink.feed(REPLACEMENT);
                     }
                 }
-                printMessageLine(ret);
+                return;
             }
+            _pendingBytes = 0;
+            sink.feed(REPLACEMENT);
+        }
+        if (u < MessageProcessor.ASCII_SIZE) {
+            sink.feed((char) u);
+        } else if ((u & 0xE0) == 0xC0) {
+            _pendingBytes = 1;
+            _codePoint = u & 0x1F;
+            _minCodePoint = 0x80;
+        } else if ((u & 0xF0) == 0xE0) {
+            _pendingBytes = 2;
+            _codePoint = u & 0x0F;
+            _minCodePoint = 0x800;
+        } else if ((u & 0xF8) == 0xF0) {
+            _pendingBytes = 3;
+            _codePoint = u & 0x07;
+            _minCodePoint = 0x10000;
+        } else {
+            sink.feed(REPLACEMENT);
         }
     }
 
+    /**
+     * Set M up with _key and convert the bytes of _inChannel to
+     * _outChannel, a buffer at a time, with no decoding or grouping.
+     * M must have the byte alphabet.
+     */
+    private void processBinary(Machine m) throws IOException {
+        if (!(_alphabet instanceof ByteAlphabet)) {
+            throw error("--binary requires the %s alphabet",
+                        ByteAlphabet.NAME);
+        }
+        setKey(m, _key);
+        ByteBuffer buf = ByteBuffer.allocate(BINARY_BUFFER_SIZE);
+        long total = 0;
+        try {
+            for (int n = _inChannel.read(buf); n != -1;
+                 n = _inChannel.read(buf)) {
+                buf.flip();
+                if (Metrics.ENABLED) {
+                    long start = System.nanoTime();
+                    m.convert(buf.array(), 0, buf.limit());
+                    Metrics.METRICS.converted(buf.limit(),
+                                              System.nanoTime() - start, 0);
+                } else {
+                    m.convert(buf.array(), 0, buf.limit());
+                }
+                while (buf.hasRemaining()) {
+                    _outChannel.write(buf);
+                }
+                total += n;
+                buf.clear();
+            }
+        } finally {
+            _inChannel.close();
+            _outChannel.close();
+        }
+        if (Metrics.ENABLED) {
+            Metrics.METRICS.io(total, total);
+        }
+    }
+
+    /**
+     * Set M up according to KEY, which is a settings line (see
+     * MessageProcessor) whose initial '*' may be omitted, in the
+     * notation of configurations with _alphabet.
+     */
+    private void setKey(Machine m, String key) {
+        Scanner fields = new Scanner(key);
+        fields.skip("\\s*[*]?");
+        String[] rotors = new String[m.numRotors()];
+        try {
+            for (int x = 0; x < rotors.length; x += 1) {
+                rotors[x] = fields.next();
+            }
+            m.insertRotors(rotors);
+            m.setRotors(characters(fields.next()));
+        } catch (NoSuchElementException excp) {
+            throw error("key has too few fields");
+        }
+        StringBuilder cycles = new StringBuilder();
+        while (fields.hasNext()) {
+            cycles.append(fields.next());
+        }
+        m.setPlugboard(permutation(cycles.toString()));
+    }
+
+    /**
+     * Read _input in blocks and feed it to SINK.
+     */
+    private void processInput(InputSink sink) throws IOException {
+        char[] buf = new char[MessageProcessor.BUFFER_SIZE];
+        for (int n = _input.read(buf); n != -1; n = _input.read(buf)) {
+            sink.feed(buf, 0, n);
+        }
+        sink.finish();
+    }
+
     /**
      * Return an Enigma machine configured from the contents of configuration
-     * file _config.
+     * file _config, or from the compiled catalog _catalog.
      */
     private Machine readConfig() {
+        if (_catalog != null) {
+            Machine m = Catalog.read(_catalog);
+            _alphabet = m.alphabet();
+            return m;
+        }
         try {
             String c = _config.next();
             char c1 = c.charAt(0);
@@ -139,7 +722,9 @@ public final class Main {
             int s1 = Integer.parseInt(String.valueOf(s));
             int p1 = Integer.parseInt(String.valueOf(p));
             Collection<Rotor> allRotors = new ArrayList<>();
-            if (c.length() == 3) {
+            if (c.equals(ByteAlphabet.NAME)) {
+                _alphabet = new ByteAlphabet();
+            } else if (c.length() == 3) {
                 if (c1 > c2) {
                     throw new EnigmaException("Incorrect alphabet format");
                 }
@@ -150,22 +735,24 @@ public final class Main {
             while (_config.hasNext()) {
                 String name = _config.next();
                 String typ = _config.next();
-                String perm = "";
-                while (_config.hasNext("[(][^-]*[)]")) {
-                    perm += _config.next();
+                StringBuilder cycles = new StringBuilder();
+                while (_config.hasNext(CYCLE)) {
+                    cycles.append(_config.next());
                 }
+                String perm = cycles.toString();
                 if (!typ.contains("M") && !typ.contains("R")
                         && !typ.contains("N")) {
                     throw new EnigmaException("Incorrect rotor set up");
                 }
                 Rotor ad;
+                Permutation permu = permutation(perm);
                 if (typ.charAt(0) == 'M') {
-                    Permutation permu = new Permutation(perm, _alphabet);
-                    ad = new MovingRotor(name, permu, typ.substring(1));
+                    ad = new MovingRotor(name, permu,
+                                         characters(typ.substring(1)));
                 } else if (typ.charAt(0) == 'R') {
-                    ad = new Reflector(name, new Permutation(perm, _alphabet));
+                    ad = new Reflector(name, permu);
                 } else {
-                    ad = new Rotor(name, new Permutation(perm, _alphabet));
+                    ad = new Rotor(name, permu);
                 }
                 allRotors.add(ad);
             }
@@ -174,56 +761,39 @@ public final class Main {
             throw error("configuration file truncated");
         }
     }
+
     /**
-     * Return a rotor, reading its description from _config.
+     * Return the permutation of _alphabet given by CYCLES, which are in
+     * hexadecimal notation if it is the ByteAlphabet.
      */
-    private Rotor readRotor() {
-        try {
-            return null;
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
+    private Permutation permutation(String cycles) {
+        if (_alphabet instanceof ByteAlphabet) {
+            return ByteAlphabet.permutation(cycles, _alphabet);
         }
+        return new Permutation(cycles, _alphabet);
     }
 
     /**
-     * Set M according to the specification given on SETTINGS,
-     * which must have the format specified in the assignment.
+     * Return the characters of _alphabet written TEXT in a configuration
+     * or key, which is in hexadecimal notation if it is the
+     * ByteAlphabet.
      */
-    private void setUp(Machine M, String settings) {
-        int count = 0;
-        int s = M.numRotors();
-        Scanner settin = new Scanner(settings);
-        String[] insertStruct = new String[s];
-        settin.next();
-        while (settin.hasNext() && s > count) {
-            insertStruct[count] = settin.next();
-            count += 1;
+    private String characters(String text) {
+        if (_alphabet instanceof ByteAlphabet) {
+            return ByteAlphabet.fromHex(text);
         }
-        M.insertRotors(insertStruct);
-        String spot = settin.next();
-        M.setRotors(spot);
-        String perm = "";
-        while (settin.hasNext()) {
-            perm += settin.next();
-        }
-        M.setPlugboard(new Permutation(perm, _alphabet));
+        return text;
     }
 
     /**
-     * Print MSG in groups of five (except that the last group may
-     * have fewer letters).
+     * Return a rotor, reading its description from _config.
      */
-    private void printMessageLine(String msg) {
-        while (!msg.equals("")) {
-            for (int x = 0; x < 5; x += 1) {
-                if (!msg.equals("")) {
-                    _output.print(msg.charAt(0));
-                    msg = msg.substring(1);
-                }
-            }
-            _output.print(" ");
+    private Rotor readRotor() {
+        try {
+            return null;
+        } catch (NoSuchElementException excp) {
+            throw error("bad rotor description");
         }
-        _output.println();
     }
 
     /**
@@ -234,15 +804,133 @@ public final class Main {
     /**
      * Source of input messages.
      */
-    private Scanner _input;
+    private Reader _input;
 
     /**
      * Source of machine configuration.
      */
     private Scanner _config;
 
+    /**
+     * Name of the compiled catalog holding the machine configuration, or
+     * null if it comes from _config.
+     */
+    private String _catalog;
+
+    /**
+     * Name of the file to which the configuration is compiled, or null
+     * if messages are to be converted.
+     */
+    private String _compileTo;
+
+    /**
+     * Known plaintext for which to find keys, or null if the input is to
+     * be converted.
+     */
+    private String _crib;
+
+    /**
+     * Position of _crib in the ciphertext.
+     */
+    private int _cribOffset;
+
+    /**
+     * Number of keys to report from a ciphertext-only search (see
+     * Solver), or 0 if the input is to be converted.
+     */
+    private int _solve;
+
+    /**
+     * Name of a file of sample text from which to take n-gram statistics
+     * for _solve, or null for the default.
+     */
+    private String _ngrams;
+
+    /**
+     * Address at which to serve clients (see Server), or null if the
+     * input is to be converted.
+     */
+    private String _serveAt;
+
     /**
      * File for encoded/decoded messages.
      */
     private PrintStream _output;
+
+    /**
+     * Input and output files when both are named on the command line,
+     * else null.
+     */
+    private FileChannel _inChannel, _outChannel;
+
+    /**
+     * True iff the input is to be converted as raw bytes.
+     */
+    private boolean _binary;
+
+    /**
+     * Settings for the --binary conversion, or null.
+     */
+    private String _key;
+
+    /**
+     * True iff messages are converted with precomputed keystreams.
+     */
+    private boolean _keystream;
+
+    /**
+     * Number of worker threads converting messages (see BatchProcessor),
+     * or 0 to convert them in the main thread.
+     */
+    private int _threads;
+
+    /**
+     * True iff the mapped input is decoded as UTF-8 (resp. ISO-8859-1).
+     */
+    private boolean _utf8, _latin1;
+
+    /**
+     * Number of continuation bytes still expected in the current UTF-8
+     * sequence, the bits of its code point decoded so far, and the
+     * smallest code point that may be encoded with its length.
+     */
+    private int _pendingBytes, _codePoint, _minCodePoint;
+
+    /**
+     * Size of the buffer of bytes converted at one time by
+     * processBinary.
+     */
+    private static final int BINARY_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Number of bytes of the input file mapped at one time.
+     */
+    private static final long MAP_WINDOW = MappedFileWriter.MAP_WINDOW;
+
+    /**
+     * A token of a permutation in a configuration file.
+     */
+    private static final Pattern CYCLE = Pattern.compile("[(][^-]*[)]");
+
+    /**
+     * Line terminator written after each line of output.
+     */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * Number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Character substituted for undecodable input.
+     */
+    private static final char REPLACEMENT = '\uFFFD';
+
+    /**
+     * Masks and tag of UTF-8 continuation bytes, and the number of code
+     * point bits each carries.
+     */
+    private static final int BYTE_MASK = 0xFF, UTF8_TAG_MASK = 0xC0,
+        UTF8_CONTINUATION = 0x80, UTF8_BITS = 6;
 }
@@ -0,0 +1,62 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A Writer of ASCII text into a file through memory-mapped windows.
+ * Each character is stored as one byte.  Windows are sized from an
+ * estimate of the final length so that the file is not extended far
+ * beyond it; close() truncates the file to the number of bytes written.
+ *
+ * @author John Schulz
+ */
+class MappedFileWriter extends Writer {
+
+    /**
+     * A Writer into CHANNEL, which must be open for reading and writing,
+     * expecting about ESTIMATE bytes of output.
+     */
+    MappedFileWriter(FileChannel channel, long estimate) {
+        _channel = channel;
+        _estimate = estimate;
+    }
+
+    @Override
+    public void write(char[] buf, int off, int len) throws IOException {
+        if (_window == null || _window.remaining() < len) {
+            long size = Math.min(MAP_WINDOW, _estimate - _pos);
+            _window = _channel.map(FileChannel.MapMode.READ_WRITE, _pos,
+                                   Math.max(size, len));
+        }
+        for (int x = off; x < off + len; x += 1) {
+            _window.put((byte) buf[x]);
+        }
+        _pos += len;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        _window = null;
+        _channel.truncate(_pos);
+        _channel.close();
+    }
+
+    /** Largest number of bytes mapped at one time. */
+    static final long MAP_WINDOW = 1 << 26;
+
+    /** The output file. */
+    private final FileChannel _channel;
+    /** Expected final size of the file. */
+    private final long _estimate;
+    /** Current mapped window, or null if none. */
+    private MappedByteBuffer _window;
+    /** Number of bytes written. */
+    private long _pos;
+}
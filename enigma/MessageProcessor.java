@@ -0,0 +1,417 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * The line-oriented message format read by Main.  Characters are fed in
+ * one at a time; lines starting with '*' set up the machine, other
+ * non-blank lines are messages, which are upper-cased, stripped of
+ * characters outside the alphabet, converted, and written in groups of
+ * five, and blank lines are copied through.  Lines end as for
+ * Scanner.nextLine.  Nothing is allocated per character or per message
+ * line.
+ *
+ * @author John Schulz
+ */
+class MessageProcessor implements InputSink {
+
+    /**
+     * A processor that converts messages with MACHINE, whose alphabet is
+     * ALPHABET, writing the results to OUTPUT.
+     */
+    MessageProcessor(Machine machine, Alphabet alphabet, Writer output) {
+        _machine = machine;
+        _alphabet = alphabet;
+        _output = output;
+    }
+
+    /**
+     * Process the input character CH, treating "\r\n" and each
+     * character for which isLineTerminator holds as a line terminator.
+     */
+    @Override
+    public void feed(char ch) throws IOException {
+        if (_afterCR && ch == '\n') {
+            _afterCR = false;
+            return;
+        }
+        _afterCR = ch == '\r';
+        if (Metrics.ENABLED) {
+            _numRead += 1;
+        }
+        if (isLineTerminator(ch)) {
+            endLine();
+        } else {
+            addChar(ch);
+        }
+    }
+
+    /**
+     * Return true iff CH ends a line, as for Scanner.nextLine.  A '\r'
+     * immediately followed by '\n' ends only one line.
+     */
+    static boolean isLineTerminator(char ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u2028'
+            || ch == '\u2029' || ch == '\u0085';
+    }
+
+    /**
+     * Finish processing the input, including a final line that lacks a
+     * terminator, and write out all buffered output.
+     */
+    @Override
+    public void finish() throws IOException {
+        if (_lineKind != BLANK_LINE) {
+            endLine();
+        }
+        flush();
+    }
+
+    /**
+     * Write out the output converted so far, as after an error.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Write out the contents of the output buffer.
+     */
+    void flush() throws IOException {
+        _output.write(_outBuf, 0, _numOut);
+        if (Metrics.ENABLED) {
+            Metrics.METRICS.io(_numRead, _numOut);
+            _numRead = 0;
+        }
+        _numOut = 0;
+    }
+
+    /**
+     * Add CH, which is not a line terminator, to the current input line,
+     * converting it if it belongs to a message.
+     */
+    private void addChar(char ch) throws IOException {
+        if (_lineKind == BLANK_LINE) {
+            if (ch == '*') {
+                _lineKind = SETTINGS_LINE;
+            } else if (!_setup) {
+                throw new EnigmaException("No setting declared.");
+            } else {
+                _lineKind = MESSAGE_LINE;
+            }
+        }
+        if (_lineKind == SETTINGS_LINE) {
+            _settings.append(ch);
+            return;
+        }
+        int up = ch < UPPER_ASCII.length ? UPPER_ASCII[ch] : -1;
+        if (up >= 0) {
+            addMessageChar((char) up);
+        } else {
+            String upper = String.valueOf(ch).toUpperCase();
+            for (int x = 0; x < upper.length(); x += 1) {
+                addMessageChar(upper.charAt(x));
+            }
+        }
+    }
+
+    /**
+     * Queue the upper-case character CH of a message line for conversion
+     * if it is in the alphabet.
+     */
+    private void addMessageChar(char ch) throws IOException {
+        if (_alphabet.contains(ch)) {
+            _codes[_numCodes] = _alphabet.toInt(ch);
+            _numCodes += 1;
+            if (_numCodes == _codes.length) {
+                convertCodes();
+            }
+        }
+    }
+
+    /**
+     * Finish the current input line.
+     */
+    private void endLine() throws IOException {
+        if (_lineKind == SETTINGS_LINE) {
+            _setup = true;
+            if (Metrics.ENABLED) {
+                long start = System.nanoTime();
+                applySettings(_settings.toString());
+                Metrics.METRICS.setUp(System.nanoTime() - start);
+            } else {
+                applySettings(_settings.toString());
+            }
+            _settings.setLength(0);
+        } else {
+            if (_lineKind == MESSAGE_LINE) {
+                convertCodes();
+                if (_groupSize > 0) {
+                    emit(' ');
+                }
+                _groupSize = 0;
+                if (Metrics.ENABLED) {
+                    Metrics.METRICS.message(_messageLength, _messageNanos);
+                    _messageLength = 0;
+                    _messageNanos = 0;
+                }
+            }
+            for (int x = 0; x < LINE_SEPARATOR.length(); x += 1) {
+                emit(LINE_SEPARATOR.charAt(x));
+            }
+        }
+        _lineKind = BLANK_LINE;
+    }
+
+    /**
+     * Convert the pending message characters in _codes and emit them in
+     * groups of five (except that the last group of a line may have
+     * fewer letters).
+     */
+    private void convertCodes() throws IOException {
+        long start = 0, converted = 0;
+        if (Metrics.ENABLED) {
+            start = System.nanoTime();
+        }
+        if (_keystream != null) {
+            _keystream.convert(_codes, _codes, 0, _numCodes);
+        } else {
+            _machine.convert(_codes, _codes, 0, _numCodes);
+        }
+        if (Metrics.ENABLED) {
+            converted = System.nanoTime();
+        }
+        for (int x = 0; x < _numCodes; x += 1) {
+            emit(_alphabet.toChar(_codes[x]));
+            _groupSize += 1;
+            if (_groupSize == GROUP_SIZE) {
+                emit(' ');
+                _groupSize = 0;
+            }
+        }
+        if (Metrics.ENABLED) {
+            long end = System.nanoTime();
+            Metrics.METRICS.converted(_numCodes, converted - start,
+                                      end - converted);
+            _messageLength += _numCodes;
+            _messageNanos += end - start;
+        }
+        _numCodes = 0;
+    }
+
+    /**
+     * Append CH to the output buffer, writing the buffer out when full.
+     */
+    private void emit(char ch) throws IOException {
+        if (_numOut == _outBuf.length) {
+            flush();
+        }
+        _outBuf[_numOut] = ch;
+        _numOut += 1;
+    }
+
+    /**
+     * Convert messages with precomputed keystreams (see Keystream) iff
+     * ON.  Each distinct settings line then costs the computation of its
+     * keystream once, and its messages cost a table lookup per
+     * character.  Keystreams are kept for the most recently used
+     * settings lines, up to KEYSTREAM_CACHE_SIZE lines and
+     * KEYSTREAM_CACHE_ENTRIES table entries in all (64 MB), the least
+     * recently used being dropped one at a time to make room; the
+     * keystream being computed may take up to 32 MB more.  Settings
+     * whose keystream would be too large (see Keystream.of) are
+     * converted by the machine as usual, and that too is remembered.
+     * Takes effect from the next settings line.
+     */
+    void useKeystreams(boolean on) {
+        _keystreams = on ? new LinkedHashMap<>(16, 0.75f, true) : null;
+        _keystreamEntries = 0;
+        _keystream = null;
+    }
+
+    /**
+     * Return true iff the keystream for the settings line SETTINGS, or
+     * the decision to convert its messages with the machine, is cached.
+     */
+    boolean hasKeystream(String settings) {
+        return _keystreams != null && _keystreams.containsKey(settings);
+    }
+
+    /**
+     * Set up for the messages following the settings line SETTINGS:
+     * set up _machine, or select the keystream for SETTINGS, computing
+     * it with _machine if it is not already cached.
+     */
+    private void applySettings(String settings) {
+        if (_keystreams == null) {
+            setUp(_machine, settings);
+            return;
+        }
+        Keystream keystream = _keystreams.get(settings);
+        if (keystream == null) {
+            setUp(_machine, settings);
+            if (!_keystreams.containsKey(settings)) {
+                keystream = Keystream.of(_machine);
+                cacheKeystream(settings, keystream);
+            }
+        }
+        if (keystream != null) {
+            keystream.reset();
+        }
+        _keystream = keystream;
+    }
+
+    /**
+     * Add KEYSTREAM (possibly null) to _keystreams as the keystream for
+     * SETTINGS, then drop the least recently used entries until the
+     * cache is within its limits (see useKeystreams) or holds KEYSTREAM
+     * alone.
+     */
+    private void cacheKeystream(String settings, Keystream keystream) {
+        _keystreams.put(settings, keystream);
+        _keystreamEntries += keystream == null ? 0 : keystream.entries();
+        Iterator<Map.Entry<String, Keystream>> eldest =
+            _keystreams.entrySet().iterator();
+        while (_keystreams.size() > 1
+               && (_keystreams.size() > KEYSTREAM_CACHE_SIZE
+                   || _keystreamEntries > KEYSTREAM_CACHE_ENTRIES)) {
+            Keystream dropped = eldest.next().getValue();
+            _keystreamEntries -= dropped == null ? 0 : dropped.entries();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Set M according to the specification given on SETTINGS,
+     * which must have the format specified in the assignment.
+     */
+    private void setUp(Machine M, String settings) {
+        int count = 0;
+        int s = M.numRotors();
+        Scanner settin = new Scanner(settings);
+        String[] insertStruct = new String[s];
+        settin.next();
+        while (settin.hasNext() && s > count) {
+            insertStruct[count] = settin.next();
+            count += 1;
+        }
+        M.insertRotors(insertStruct);
+        String spot = settin.next();
+        M.setRotors(spot);
+        String perm = "";
+        while (settin.hasNext()) {
+            perm += settin.next();
+        }
+        M.setPlugboard(new Permutation(perm, _alphabet));
+    }
+
+    /**
+     * Return a table mapping each ASCII character to its upper-case form
+     * (as String.toUpperCase would produce it in the default locale), or
+     * to -1 if that form is not a single character.
+     */
+    private static int[] upperAsciiTable() {
+        int[] table = new int[ASCII_SIZE];
+        for (int ch = 0; ch < ASCII_SIZE; ch += 1) {
+            String upper = String.valueOf((char) ch).toUpperCase();
+            table[ch] = upper.length() == 1 ? upper.charAt(0) : -1;
+        }
+        return table;
+    }
+
+    /** The machine that converts messages. */
+    private final Machine _machine;
+
+    /** Alphabet of _machine. */
+    private final Alphabet _alphabet;
+
+    /** Destination of converted messages. */
+    private final Writer _output;
+
+    /** Converted characters waiting to be written to _output. */
+    private final char[] _outBuf = new char[BUFFER_SIZE];
+
+    /** Number of characters in _outBuf. */
+    private int _numOut;
+
+    /** Alphabet indices of message characters awaiting conversion. */
+    private final int[] _codes = new int[BUFFER_SIZE];
+
+    /** Number of entries in _codes. */
+    private int _numCodes;
+
+    /** Number of characters in the current output group. */
+    private int _groupSize;
+
+    /** Kind of the current input line (BLANK_LINE if nothing has been
+     *  read on it yet). */
+    private int _lineKind = BLANK_LINE;
+
+    /** The current settings line, as read so far. */
+    private final StringBuilder _settings = new StringBuilder();
+
+    /** True iff a settings line has been processed. */
+    private boolean _setup;
+
+    /** Keystreams computed so far, by settings line (null for lines
+     *  converted by _machine, see useKeystreams), or null if messages
+     *  are always converted by _machine.  Iterates from the least to the
+     *  most recently used. */
+    private LinkedHashMap<String, Keystream> _keystreams;
+
+    /** Total number of table entries of the keystreams in _keystreams. */
+    private long _keystreamEntries;
+
+    /** Keystream of the current settings line, or null if messages are
+     *  converted by _machine. */
+    private Keystream _keystream;
+
+    /** True iff the previous input character was '\r'. */
+    private boolean _afterCR;
+
+    /** Number of characters fed since the last flush, counted only
+     *  when Metrics.ENABLED. */
+    private long _numRead;
+
+    /** Number of characters converted on the current message line,
+     *  counted only when Metrics.ENABLED. */
+    private int _messageLength;
+
+    /** Time spent converting and formatting the current message line,
+     *  counted only when Metrics.ENABLED. */
+    private long _messageNanos;
+
+    /** Kinds of input line. */
+    private static final int BLANK_LINE = 0, SETTINGS_LINE = 1,
+        MESSAGE_LINE = 2;
+
+    /** Size of the output and conversion buffers. */
+    static final int BUFFER_SIZE = 1 << 13;
+
+    /** Number of characters in a complete output group. */
+    static final int GROUP_SIZE = 5;
+
+    /** Number of ASCII characters. */
+    static final int ASCII_SIZE = 128;
+
+    /** Maximum number of settings lines whose keystreams are kept by
+     *  useKeystreams. */
+    static final int KEYSTREAM_CACHE_SIZE = 32;
+
+    /** Maximum total number of table entries of the keystreams kept by
+     *  useKeystreams: 64 MB, room for two of the largest or about 75
+     *  of a naval machine with three moving rotors. */
+    static final long KEYSTREAM_CACHE_ENTRIES = 2L * Keystream.DEFAULT_LIMIT;
+
+    /** Upper-case forms of the ASCII characters (see upperAsciiTable). */
+    private static final int[] UPPER_ASCII = upperAsciiTable();
+
+    /** Line terminator written after each output line. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+}
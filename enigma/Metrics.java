@@ -0,0 +1,317 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters of the work done by the conversion path: reading the
+ * configuration, applying settings lines, converting and formatting
+ * messages, and the characters read and written.  Counts are kept in
+ * LongAdders, so that the threads of a BatchProcessor or Server do not
+ * contend for them, and message latencies in a histogram with one
+ * bucket per power of two nanoseconds.
+ *
+ * Collection is off unless the system property enigma.metrics is set
+ * (java -Denigma.metrics=on ...).  ENABLED is then a constant, and the
+ * callers test it before timing anything, so that the JIT compiler
+ * removes the instrumentation entirely when it is off.  When it is on,
+ * METRICS is registered as the JMX MBean enigma:type=Metrics, each
+ * setup, message and configuration is also recorded as a JFR event
+ * (when a flight recording is running), and, if the property is
+ * "summary", a summary is printed on the standard error at exit.
+ *
+ * @author John Schulz
+ */
+final class Metrics implements MetricsMBean {
+
+    /** Name of my MBean. */
+    static final String MBEAN_NAME = "enigma:type=Metrics";
+
+    /** True iff metrics are collected. */
+    static final boolean ENABLED;
+
+    /** The counters of this program. */
+    static final Metrics METRICS = new Metrics();
+
+    static {
+        String mode = System.getProperty("enigma.metrics");
+        ENABLED = mode != null && !mode.equals("off")
+            && !mode.equals("false");
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(METRICS, new ObjectName(MBEAN_NAME));
+            } catch (JMException excp) {
+                System.err.printf("Warning: metrics not registered: %s%n",
+                                  excp.getMessage());
+            }
+        }
+        if (ENABLED && mode.equals("summary")) {
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(() -> METRICS.printSummary(System.err)));
+        }
+    }
+
+    /** A new set of counters, all zero, started now. */
+    Metrics() {
+        _start = System.nanoTime();
+        _latencies = new LongAdder[BUCKETS];
+        for (int k = 0; k < BUCKETS; k += 1) {
+            _latencies[k] = new LongAdder();
+        }
+    }
+
+    /** Record the reading of a configuration that took NANOS. */
+    void config(long nanos) {
+        _configNanos.add(nanos);
+        ConfigEvent event = new ConfigEvent();
+        if (event.shouldCommit()) {
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    /** Record the application of a settings line, which took NANOS. */
+    void setUp(long nanos) {
+        _setups.increment();
+        _setupNanos.add(nanos);
+        SetupEvent event = new SetupEvent();
+        if (event.shouldCommit()) {
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Record the conversion of N message characters, which took
+     * CONVERTNANOS in Machine.convert and FORMATNANOS to format.
+     */
+    void converted(int n, long convertNanos, long formatNanos) {
+        _characters.add(n);
+        _convertNanos.add(convertNanos);
+        _formatNanos.add(formatNanos);
+    }
+
+    /**
+     * Record a message line of N characters, whose conversion and
+     * formatting took NANOS in all.
+     */
+    void message(int n, long nanos) {
+        _messages.increment();
+        _latencies[bucket(nanos)].increment();
+        MessageEvent event = new MessageEvent();
+        if (event.shouldCommit()) {
+            event.characters = n;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    /** Record the reading of READ and writing of WRITTEN characters. */
+    void io(long read, long written) {
+        _read.add(read);
+        _written.add(written);
+    }
+
+    /** Return the histogram bucket of a latency of NANOS. */
+    static int bucket(long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    @Override
+    public long getCharacters() {
+        return _characters.sum();
+    }
+
+    @Override
+    public long getMessages() {
+        return _messages.sum();
+    }
+
+    @Override
+    public long getSetups() {
+        return _setups.sum();
+    }
+
+    @Override
+    public long getCharactersRead() {
+        return _read.sum();
+    }
+
+    @Override
+    public long getCharactersWritten() {
+        return _written.sum();
+    }
+
+    @Override
+    public long getConfigNanos() {
+        return _configNanos.sum();
+    }
+
+    @Override
+    public long getSetupNanos() {
+        return _setupNanos.sum();
+    }
+
+    @Override
+    public long getConvertNanos() {
+        return _convertNanos.sum();
+    }
+
+    @Override
+    public long getFormatNanos() {
+        return _formatNanos.sum();
+    }
+
+    @Override
+    public double getCharactersPerSecond() {
+        return perSecond(getCharacters());
+    }
+
+    @Override
+    public double getMessagesPerSecond() {
+        return perSecond(getMessages());
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] result = new long[BUCKETS];
+        for (int k = 0; k < BUCKETS; k += 1) {
+            result[k] = _latencies[k].sum();
+        }
+        return result;
+    }
+
+    @Override
+    public long getLatencyMedianNanos() {
+        return latencyPercentile(50);
+    }
+
+    @Override
+    public long getLatency99Nanos() {
+        return latencyPercentile(99);
+    }
+
+    /**
+     * Return an upper bound on the latency of P percent of the
+     * messages: the largest latency in the first bucket of the
+     * histogram at which that many messages have been counted, or 0 if
+     * there have been no messages.
+     */
+    long latencyPercentile(int p) {
+        long[] histogram = getLatencyHistogram();
+        long total = 0;
+        for (long n : histogram) {
+            total += n;
+        }
+        long seen = 0;
+        for (int k = 0; k < BUCKETS; k += 1) {
+            seen += histogram[k];
+            if (seen > 0 && seen * 100 >= total * p) {
+                return k == BUCKETS - 1 ? Long.MAX_VALUE : (2L << k) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /** Return N divided by the seconds since I was created. */
+    private double perSecond(long n) {
+        long nanos = Math.max(1, System.nanoTime() - _start);
+        return n * NANOS_PER_SECOND / nanos;
+    }
+
+    /** Print a summary of my counters on OUT. */
+    void printSummary(PrintStream out) {
+        out.printf("Metrics: %d messages, %d characters converted; "
+                   + "%d read, %d written%n",
+                   getMessages(), getCharacters(), getCharactersRead(),
+                   getCharactersWritten());
+        out.printf("  %.0f characters/s, %.0f messages/s%n",
+                   getCharactersPerSecond(), getMessagesPerSecond());
+        out.printf("  time (ms): config %.3f, %d setups %.3f, "
+                   + "convert %.3f, format %.3f%n",
+                   millis(getConfigNanos()), getSetups(),
+                   millis(getSetupNanos()), millis(getConvertNanos()),
+                   millis(getFormatNanos()));
+        out.printf("  message latency (ns): median <= %d, 99%% <= %d%n",
+                   getLatencyMedianNanos(), getLatency99Nanos());
+    }
+
+    /** Return NANOS in milliseconds. */
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /** A JFR event recording the reading of the configuration. */
+    @Name("enigma.Config")
+    @Label("Read Configuration")
+    @Category("Enigma")
+    static class ConfigEvent extends Event {
+        /** Time taken. */
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    /** A JFR event recording the application of a settings line. */
+    @Name("enigma.Setup")
+    @Label("Apply Settings")
+    @Category("Enigma")
+    static class SetupEvent extends Event {
+        /** Time taken. */
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    /** A JFR event recording the conversion of a message line. */
+    @Name("enigma.Message")
+    @Label("Convert Message")
+    @Category("Enigma")
+    static class MessageEvent extends Event {
+        /** Number of characters converted. */
+        @Label("Characters")
+        int characters;
+        /** Time taken to convert and format them. */
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    /** Number of latency histogram buckets. */
+    static final int BUCKETS = Long.SIZE - 1;
+
+    /** Nanoseconds per second and per millisecond. */
+    private static final double NANOS_PER_SECOND = 1e9,
+        NANOS_PER_MILLI = 1e6;
+
+    /** Value of System.nanoTime() when I was created. */
+    private final long _start;
+
+    /** Counters of characters and messages converted, settings lines
+     *  applied, and characters read and written. */
+    private final LongAdder _characters = new LongAdder(),
+        _messages = new LongAdder(), _setups = new LongAdder(),
+        _read = new LongAdder(), _written = new LongAdder();
+
+    /** Time spent in each phase. */
+    private final LongAdder _configNanos = new LongAdder(),
+        _setupNanos = new LongAdder(), _convertNanos = new LongAdder(),
+        _formatNanos = new LongAdder();
+
+    /** Message latency histogram (see getLatencyHistogram). */
+    private final LongAdder[] _latencies;
+}
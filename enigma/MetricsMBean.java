@@ -0,0 +1,56 @@
+package enigma;
+
+/**
+ * The management interface of Metrics, through which JMX clients (such
+ * as jconsole) read the counters of a running program.  Times are in
+ * nanoseconds.
+ *
+ * @author John Schulz
+ */
+public interface MetricsMBean {
+
+    /** Return the number of message characters converted. */
+    long getCharacters();
+
+    /** Return the number of message lines converted. */
+    long getMessages();
+
+    /** Return the number of settings lines applied. */
+    long getSetups();
+
+    /** Return the number of input characters read. */
+    long getCharactersRead();
+
+    /** Return the number of output characters written. */
+    long getCharactersWritten();
+
+    /** Return the time spent reading the configuration. */
+    long getConfigNanos();
+
+    /** Return the time spent applying settings lines. */
+    long getSetupNanos();
+
+    /** Return the time spent in Machine.convert. */
+    long getConvertNanos();
+
+    /** Return the time spent formatting converted characters. */
+    long getFormatNanos();
+
+    /** Return the message characters converted per second so far. */
+    double getCharactersPerSecond();
+
+    /** Return the message lines converted per second so far. */
+    double getMessagesPerSecond();
+
+    /**
+     * Return the message latency histogram: element K is the number of
+     * messages that took from 2**K to 2**(K+1) - 1 nanoseconds.
+     */
+    long[] getLatencyHistogram();
+
+    /** Return an upper bound on the median message latency. */
+    long getLatencyMedianNanos();
+
+    /** Return an upper bound on the 99th percentile message latency. */
+    long getLatency99Nanos();
+}
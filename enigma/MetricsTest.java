@@ -0,0 +1,43 @@
+package enigma;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests of Metrics.
+ *  @author John Schulz
+ */
+public class MetricsTest {
+
+    @Test
+    public void testCounters() {
+        Metrics metrics = new Metrics();
+        assertEquals(0, metrics.getLatencyMedianNanos());
+        metrics.setUp(1000);
+        for (int x = 0; x < 98; x += 1) {
+            metrics.converted(10, 40, 60);
+            metrics.message(10, 100);
+        }
+        metrics.message(5, 5000);
+        metrics.message(5, 1 << 20);
+        metrics.io(1200, 1300);
+        assertEquals(980, metrics.getCharacters());
+        assertEquals(100, metrics.getMessages());
+        assertEquals(1, metrics.getSetups());
+        assertEquals(1000, metrics.getSetupNanos());
+        assertEquals(98 * 40, metrics.getConvertNanos());
+        assertEquals(1300, metrics.getCharactersWritten());
+        assertEquals(98, metrics.getLatencyHistogram()[6]);
+        assertEquals(127, metrics.getLatencyMedianNanos());
+        assertEquals(8191, metrics.getLatency99Nanos());
+        assertEquals((1 << 21) - 1, metrics.latencyPercentile(100));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        metrics.printSummary(new PrintStream(bytes, true));
+        assertTrue(bytes.toString().startsWith("Metrics: 100 messages"));
+    }
+}
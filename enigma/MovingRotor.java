@@ -12,8 +12,6 @@ class MovingRotor extends Rotor {
     public String getNotches() {
         return _notches;
     }
-    /** The set for this moving rotor.*/
-    private int _set = 0;
     /**
      * A rotor named NAME whose permutation in its default setting is
      * PERM, and whose notches are at the positions indicated in NOTCHES.
@@ -23,38 +21,36 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notches = notches;
+        _notchMask = new boolean[size()];
+        Alphabet a = perm.alphabet();
+        for (int x = 0; x < notches.length(); x++) {
+            _notchMask[a.toInt(notches.charAt(x))] = true;
+        }
     }
 
-    /** Set setting() to POSN.  */
-    void set(int posn) {
-        _set = posn;
+    /** A rotor like OTHER, at the same setting, sharing its permutation
+     *  and tables. */
+    MovingRotor(MovingRotor other) {
+        super(other);
+        _notches = other._notches;
+        _notchMask = other._notchMask;
     }
 
-    /** Set setting() to character CPOSN. */
-    void set(char cposn) {
-        _set = permutation().alphabet().toInt(cposn);
+    /** Return an array whose Kth element is true iff K is one of my notch
+     *  positions.  The array is shared and must not be modified. */
+    boolean[] notchMask() {
+        return _notchMask;
     }
 
-    /** Return the conversion of P (an integer in the range 0..size()-1)
-     *  according to my permutation. */
-    int convertForward(int p) {
-        int orig = getPermutation().wrap(p + _set);
-        int input = getPermutation().permute(orig);
-        int output = getPermutation().wrap(input - _set);
-        return output;
+    @Override
+    Rotor copy() {
+        return new MovingRotor(this);
     }
 
-    /** Return the conversion of E (an integer in the range 0..size()-1)
-     *  according to the inverse of my permutation. */
-    int convertBackward(int e) {
-        int orig = getPermutation().wrap(e + _set);
-        int input = getPermutation().invert(orig);
-        int output = getPermutation().wrap(input - _set);
-        return output;
-    }
     @Override
     void advance() {
-        _set = (_set + 1) % getPermutation().size();
+        int next = setting() + 1;
+        set(next == size() ? 0 : next);
     }
 
     @Override()
@@ -64,12 +60,9 @@ class MovingRotor extends Rotor {
 
     @Override()
     boolean atNotch() {
-        Alphabet a = getPermutation().alphabet();
-        for (int x = 0; x < _notches.length(); x++) {
-            if (_set == a.toInt(_notches.charAt(x))) {
-                return true;
-            }
-        }
-        return false;
+        return _notchMask[setting()];
     }
+
+    /** _notchMask[K] is true iff K is one of my notch positions. */
+    private final boolean[] _notchMask;
 }
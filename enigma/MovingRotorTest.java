@@ -70,4 +70,28 @@ public class MovingRotorTest {
         checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
     }
 
+    @Test
+    public void checkLargeAlphabet() {
+        Alphabet big = new CharacterRange('\u0100', '\u01ff');
+        int n = big.size();
+        int[] forward = new int[n], inverse = new int[n];
+        for (int p = 0; p < n; p += 1) {
+            forward[p] = (p * 7 + 3) % n;
+            inverse[forward[p]] = p;
+        }
+        Permutation perm = new Permutation(forward, inverse, big);
+        rotor = new MovingRotor("BIG", perm, "");
+        for (int s = 0; s < n; s += 37) {
+            rotor.set(s);
+            for (int p = 0; p < n; p += 1) {
+                int e = Math.floorMod(forward[(p + s) % n] - s, n);
+                assertEquals(e, rotor.convertForward(p));
+                assertEquals(p, rotor.convertBackward(e));
+            }
+        }
+        rotor.set(n - 1);
+        rotor.advance();
+        assertEquals(0, rotor.setting());
+    }
+
 }
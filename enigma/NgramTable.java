@@ -0,0 +1,156 @@
+package enigma;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * Log-frequency statistics of the N-grams (runs of N consecutive
+ * characters) of a language, used to score trial decryptions (see
+ * Solver).  Entry K of the table is SCALE times the base-10 logarithm of
+ * the relative frequency of the N-gram whose characters, as alphabet
+ * indices, are the base-size digits of K, most significant first.
+ * N-grams never seen are scored as if seen FLOOR times.
+ *
+ * @author John Schulz
+ */
+class NgramTable {
+
+    /**
+     * A table of the N-grams of an alphabet of SIZE characters, where
+     * COUNTS[K] is the number of times N-gram K (as described above) was
+     * seen.
+     */
+    NgramTable(int size, int n, long[] counts) {
+        if (n < 1 || counts.length != entries(size, n)) {
+            throw error("bad n-gram counts");
+        }
+        _size = size;
+        _length = n;
+        _span = (int) entries(size, n - 1);
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            throw error("no n-grams to count");
+        }
+        _logs = new int[counts.length];
+        for (int k = 0; k < counts.length; k += 1) {
+            double freq = Math.max(counts[k], FLOOR) / (double) total;
+            _logs[k] = (int) Math.round(SCALE * Math.log10(freq));
+        }
+    }
+
+    /**
+     * Return a table of the N-grams of TEXT, whose characters not in
+     * ALPHA are ignored, for the largest N <= MAX_LENGTH for which the
+     * table has at most MAX_ENTRIES entries.
+     */
+    static NgramTable train(Alphabet alpha, CharSequence text) {
+        int size = alpha.size();
+        int n;
+        for (n = MAX_LENGTH; n > 1 && entries(size, n) > MAX_ENTRIES;
+             n -= 1) {
+            continue;
+        }
+        if (entries(size, n) > MAX_ENTRIES) {
+            throw error("alphabet too large for n-gram statistics");
+        }
+        long[] counts = new long[(int) entries(size, n)];
+        int span = (int) entries(size, n - 1);
+        int index = 0, run = 0;
+        for (int x = 0; x < text.length(); x += 1) {
+            char ch = text.charAt(x);
+            if (!alpha.contains(ch)) {
+                continue;
+            }
+            index = (index % span) * size + alpha.toInt(ch);
+            run += 1;
+            if (run >= n) {
+                counts[index] += 1;
+            }
+        }
+        return new NgramTable(size, n, counts);
+    }
+
+    /**
+     * Return a table of English letter frequencies for ALPHA, or null if
+     * ALPHA lacks some of the letters A-Z.  Other characters of ALPHA are
+     * treated as never seen.
+     */
+    static NgramTable english(Alphabet alpha) {
+        long[] counts = new long[alpha.size()];
+        for (int k = 0; k < ENGLISH.length; k += 1) {
+            char ch = (char) ('A' + k);
+            if (!alpha.contains(ch)) {
+                return null;
+            }
+            counts[alpha.toInt(ch)] = ENGLISH[k];
+        }
+        return new NgramTable(alpha.size(), 1, counts);
+    }
+
+    /** Return N, the length of my N-grams. */
+    int length() {
+        return _length;
+    }
+
+    /**
+     * Return the sum of the scores of the N-grams of TEXT[0 .. LEN - 1],
+     * a sequence of alphabet indices.
+     */
+    long score(int[] text, int len) {
+        int[] logs = _logs;
+        long total = 0;
+        int index = 0;
+        for (int i = 0; i < len; i += 1) {
+            if (i >= _length) {
+                index -= text[i - _length] * _span;
+            }
+            index = index * _size + text[i];
+            if (i >= _length - 1) {
+                total += logs[index];
+            }
+        }
+        return total;
+    }
+
+    /** Return SIZE to the power N, or a number greater than MAX_ENTRIES if
+     *  that is larger. */
+    private static long entries(int size, int n) {
+        long result = 1;
+        for (int k = 0; k < n && result <= MAX_ENTRIES; k += 1) {
+            result *= size;
+        }
+        return result;
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+    /** N. */
+    private final int _length;
+    /** Size to the power N - 1: the weight of the first character of an
+     *  N-gram in its index. */
+    private final int _span;
+    /** Scaled logarithms of the N-gram frequencies, by index. */
+    private final int[] _logs;
+
+    /** Longest N-grams counted by train. */
+    static final int MAX_LENGTH = 3;
+
+    /** Largest number of entries in a table. */
+    static final int MAX_ENTRIES = 1 << 24;
+
+    /** Multiplier of the logarithms in the table. */
+    private static final double SCALE = 1000;
+
+    /** Count assumed for N-grams never seen. */
+    private static final double FLOOR = 0.01;
+
+    /** Frequencies of the letters A-Z in English text, per 100000
+     *  letters. */
+    private static final long[] ENGLISH = {
+        8167, 1492, 2782, 4253, 12702, 2228, 2015, 6094, 6966, 153, 772,
+        4025, 2406, 6749, 7507, 1929, 95, 5987, 6327, 9056, 2758, 978,
+        2360, 150, 1974, 74
+    };
+}
@@ -0,0 +1,263 @@
+package enigma;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * The stepping mechanism of a machine with a given sequence of rotors,
+ * acting on arrays of rotor positions.  Besides single steps, it can
+ * compute the positions after any number of steps directly from the
+ * notch positions, in time that depends on the number of rotors but not
+ * on the number of steps.
+ *
+ * <p>Stepping follows Machine: at each key press, every rotor at a notch
+ * advances the rotor to its left and, if that rotor rotates, itself; the
+ * rightmost rotor always advances; no rotor moves twice.  A rotor whose
+ * left neighbor rotates therefore never stays on a notch for more than
+ * one key press (the double step).  If no such rotor has notches at two
+ * adjacent positions, no two causes of motion ever coincide after the
+ * first step, so each rotor's motion is determined by how many times the
+ * rotor to its right was at a notch.  Machines with adjacent notches are
+ * advanced one step at a time.
+ *
+ * @author John Schulz
+ */
+class Odometer {
+
+    /**
+     * The stepping mechanism for ROTORS, where ROTORS[0] is the
+     * reflector and the last rotor is the rightmost.
+     */
+    Odometer(Rotor[] rotors) {
+        int n = rotors.length;
+        _size = rotors[0].size();
+        _rotates = new boolean[n];
+        _notches = new boolean[n][];
+        _notchCounts = new int[n][];
+        _entries = new int[n][];
+        _nextEntry = new int[n][];
+        _simple = true;
+        for (int x = 0; x < n; x += 1) {
+            _rotates[x] = rotors[x].rotates();
+            if (_rotates[x] && rotors[x] instanceof MovingRotor) {
+                _notches[x] = ((MovingRotor) rotors[x]).notchMask();
+            } else {
+                _notches[x] = new boolean[_size];
+            }
+        }
+        for (int x = 0; x < n; x += 1) {
+            if (x > 0 && _rotates[x] && _rotates[x - 1]
+                && !compile(x)) {
+                _simple = false;
+            }
+        }
+        _pos = new long[n][n + 1];
+        _kicks = new long[n][n + 1];
+    }
+
+    /**
+     * Fill in the tables used to jump rotor X forward.  Return false if
+     * X has notches at two adjacent positions (or at every position).
+     */
+    private boolean compile(int x) {
+        boolean[] notch = _notches[x];
+        int m = _size;
+        int[] counts = new int[2 * m + 1];
+        int numEntries = 0;
+        for (int k = 0; k < 2 * m; k += 1) {
+            counts[k + 1] = counts[k] + (notch[k % m] ? 1 : 0);
+        }
+        for (int k = 0; k < m; k += 1) {
+            if (notch[k] && notch[(k + 1) % m]) {
+                return false;
+            }
+            if (!notch[(k + m - 1) % m]) {
+                numEntries += 1;
+            }
+        }
+        int[] entries = new int[numEntries];
+        for (int k = 0, e = 0; k < m; k += 1) {
+            if (!notch[(k + m - 1) % m]) {
+                entries[e] = k;
+                e += 1;
+            }
+        }
+        int[] next = new int[m];
+        for (int k = m - 1, e = numEntries; k >= 0; k -= 1) {
+            while (e > 0 && entries[e - 1] > k) {
+                e -= 1;
+            }
+            next[k] = e % numEntries;
+        }
+        _notchCounts[x] = counts;
+        _entries[x] = entries;
+        _nextEntry[x] = next;
+        return true;
+    }
+
+    /**
+     * Advance the rotor positions POS by one key press.
+     */
+    void step(int[] pos) {
+        int last = pos.length - 1;
+        boolean selfMoved = false;
+        boolean prevMoved = false;
+        int[] before = copyOf(pos);
+        for (int x = 1; x <= last; x += 1) {
+            boolean moved = false;
+            if (_notches[x][before[x]]) {
+                if (!prevMoved && _rotates[x - 1]) {
+                    pos[x - 1] = (before[x - 1] + 1) % _size;
+                }
+                if (_rotates[x] && _rotates[x - 1]) {
+                    pos[x] = (before[x] + 1) % _size;
+                    moved = true;
+                }
+            }
+            prevMoved = moved;
+            selfMoved = moved;
+        }
+        if (!selfMoved && _rotates[last]) {
+            pos[last] = (before[last] + 1) % _size;
+        }
+    }
+
+    /**
+     * Return a copy of POS in a reused array.
+     */
+    private int[] copyOf(int[] pos) {
+        if (_before == null || _before.length != pos.length) {
+            _before = new int[pos.length];
+        }
+        System.arraycopy(pos, 0, _before, 0, pos.length);
+        return _before;
+    }
+
+    /**
+     * Advance the rotor positions POS by N >= 0 key presses.
+     */
+    void advance(int[] pos, long n) {
+        if (n < 0) {
+            throw error("cannot step a machine backwards");
+        }
+        if (n == 0) {
+            return;
+        }
+        step(pos);
+        n -= 1;
+        if (!_simple) {
+            for (; n > 0; n -= 1) {
+                step(pos);
+            }
+            return;
+        }
+        int last = pos.length - 1;
+        for (int x = last; x >= 1; x -= 1) {
+            for (int d = 0; d <= last; d += 1) {
+                long t = n - d;
+                if (t <= 0) {
+                    _pos[x][d] = pos[x];
+                    _kicks[x][d] = 0;
+                } else if (!_rotates[x]) {
+                    _pos[x][d] = pos[x];
+                    _kicks[x][d] = 0;
+                } else if (x == last) {
+                    jumpRightmost(x, pos[x], t, d);
+                } else if (!_rotates[x - 1]) {
+                    _pos[x][d] = (pos[x] + _kicks[x + 1][d] % _size) % _size;
+                    _kicks[x][d] = 0;
+                } else {
+                    boolean lastKick =
+                        _rotates[x + 1]
+                        && _notches[x + 1][(int) _pos[x + 1][d + 1]];
+                    if (d == last) {
+                        lastKick = false;
+                    }
+                    jumpMiddle(x, pos[x], _kicks[x + 1][d], lastKick, d);
+                }
+            }
+        }
+        for (int x = 1; x <= last; x += 1) {
+            pos[x] = (int) _pos[x][0];
+        }
+    }
+
+    /**
+     * Record in _pos[X][D] and _kicks[X][D] the position after T > 0
+     * key presses of the rightmost rotor X, which starts at P, and the
+     * number of those key presses at which it was at a notch (counted
+     * only if its left neighbor rotates).
+     */
+    private void jumpRightmost(int x, int p, long t, int d) {
+        int m = _size;
+        int[] counts = _notchCounts[x];
+        int rem = (int) (t % m);
+        _pos[x][d] = (p + rem) % m;
+        if (counts == null) {
+            _kicks[x][d] = 0;
+        } else {
+            _kicks[x][d] = (t / m) * counts[m] + counts[p + rem] - counts[p];
+        }
+    }
+
+    /**
+     * Record in _pos[X][D] and _kicks[X][D] the position of rotor X,
+     * whose left neighbor rotates, after T - D key presses, and the
+     * number of those presses at which it was at a notch.  X starts at
+     * P, and the rotor to its right was at a notch on C of those key
+     * presses, the last of them iff LASTKICK.
+     */
+    private void jumpMiddle(int x, int p, long c, boolean lastKick, int d) {
+        int m = _size;
+        boolean[] notch = _notches[x];
+        int[] counts = _notchCounts[x];
+        int[] entries = _entries[x];
+        int selfStep = notch[p] ? 1 : 0;
+        int start = (p + selfStep) % m;
+        if (c == 0) {
+            _pos[x][d] = start;
+            _kicks[x][d] = selfStep;
+            return;
+        }
+        int e = entries.length;
+        long q = (c - 1) / e;
+        int r = (int) ((c - 1) % e);
+        int land = entries[(_nextEntry[x][start] + r) % e];
+        int dist = (land - start + m) % m;
+        if (dist == 0) {
+            dist = m;
+        }
+        long landings = q * counts[m] + counts[start + dist + 1]
+            - counts[start + 1];
+        boolean pending = lastKick && notch[land];
+        int extra = notch[land] && !pending ? 1 : 0;
+        _pos[x][d] = (land + extra) % m;
+        _kicks[x][d] = selfStep + landings - (pending ? 1 : 0);
+    }
+
+    /** Size of the rotors' alphabet. */
+    private final int _size;
+    /** _rotates[X] is true iff rotor X rotates. */
+    private final boolean[] _rotates;
+    /** _notches[X][K] is true iff K is a notch position of rotor X. */
+    private final boolean[][] _notches;
+    /** For each rotor X compiled for jumping, _notchCounts[X][K] is the
+     *  number of notches among positions 0 .. K-1 (mod alphabet size),
+     *  for 0 <= K <= twice the alphabet size. */
+    private final int[][] _notchCounts;
+    /** For each compiled rotor X, the positions, in increasing order,
+     *  that it enters when kicked by its right neighbor: those not
+     *  immediately after a notch. */
+    private final int[][] _entries;
+    /** For each compiled rotor X, _nextEntry[X][K] is the index in
+     *  _entries[X] of the first of those positions after K
+     *  (cyclically). */
+    private final int[][] _nextEntry;
+    /** True iff advance may jump rather than step. */
+    private boolean _simple;
+    /** Work arrays for advance: _pos[X][D] and _kicks[X][D] are the
+     *  position of rotor X and the number of key presses at which it
+     *  was at a notch, D presses before the target. */
+    private final long[][] _pos, _kicks;
+    /** Scratch copy of positions used by step. */
+    private int[] _before;
+}
@@ -1,5 +1,7 @@
 package enigma;
 
+import static enigma.EnigmaException.error;
+
 /**
  * Represents a permutation of a range of integers starting at 0 corresponding
  * to the characters of an alphabet.
@@ -16,9 +18,13 @@ class Permutation {
      */
     private String _cycles;
     /**
-     * Array list to hold circle.
+     * _forward[P] is the result of applying me to P.
+     */
+    private final int[] _forward;
+    /**
+     * _inverse[C] is the result of applying my inverse to C.
      */
-    private Cycle[] _cycling;
+    private final int[] _inverse;
 
     /**
      * Set this Permutation to that specified by CYCLES, a string in the
@@ -30,37 +36,95 @@ class Permutation {
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
         _cycles = cycles;
-        _cycling = new Cycle[size()];
-        addCycle(_cycles);
-
-
+        _forward = new int[alphabet.size()];
+        _inverse = new int[alphabet.size()];
+        for (int x = 0; x < size(); x += 1) {
+            _forward[x] = _inverse[x] = -1;
+        }
+        addCycles(_cycles);
+        for (int x = 0; x < size(); x += 1) {
+            if (_forward[x] == -1) {
+                _forward[x] = _inverse[x] = x;
+            }
+        }
     }
 
     /**
-     * Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     * c0c1...cm.
+     * A permutation of ALPHABET that maps each index X to FORWARD[X],
+     * and whose inverse is INVERSE, as produced by compiling a
+     * permutation in cycle notation (see Catalog).  The tables are
+     * checked and copied.
      */
-    private void addCycle(String cycle) {
+    Permutation(int[] forward, int[] inverse, Alphabet alphabet) {
+        _alphabet = alphabet;
+        if (forward.length != alphabet.size()
+            || inverse.length != alphabet.size()) {
+            throw error("permutation table has wrong size");
+        }
+        _forward = forward.clone();
+        _inverse = inverse.clone();
         for (int x = 0; x < size(); x += 1) {
-            Cycle tail = new Cycle(_alphabet.toChar(x));
-            _cycling[x] = new Cycle(_alphabet.toChar(x), tail);
-            Cycle a = _cycling[x]._next;
-            a._next = _cycling[x];
-            if (cycle.contains(String.valueOf(_alphabet.toChar(x)))) {
-                int i = cycle.indexOf(_alphabet.toChar(x));
-                char d = '(';
-                char b = ')';
-                char c = ' ';
-                if (cycle.charAt(i + 1) == b) {
-                    while (cycle.charAt(i) != d) {
-                        i -= 1;
-                    }
-                }
-                a._value = cycle.charAt(i + 1);
+            if (_forward[x] < 0 || _forward[x] >= size()
+                || _inverse[_forward[x]] != x) {
+                throw error("inconsistent permutation tables");
             }
+        }
+    }
 
+    /**
+     * Add each cycle c0->c1->...->cm->c0 written as "(c0c1...cm)" in
+     * CYCLES to the permutation.
+     */
+    private void addCycles(String cycles) {
+        int first = -1, prev = -1;
+        boolean open = false;
+        for (int i = 0; i < cycles.length(); i += 1) {
+            char ch = cycles.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                continue;
+            } else if (ch == '(') {
+                if (open) {
+                    throw error("nested cycle in permutation %s", cycles);
+                }
+                open = true;
+                first = prev = -1;
+            } else if (ch == ')') {
+                if (!open) {
+                    throw error("unbalanced cycle in permutation %s", cycles);
+                }
+                if (prev != -1) {
+                    link(prev, first);
+                }
+                open = false;
+            } else {
+                if (!open || !_alphabet.contains(ch)) {
+                    throw error("bad character '%c' in permutation %s",
+                                ch, cycles);
+                }
+                int c = _alphabet.toInt(ch);
+                if (_inverse[c] != -1 || c == first) {
+                    throw error("character '%c' repeated in permutation %s",
+                                ch, cycles);
+                }
+                if (prev == -1) {
+                    first = c;
+                } else {
+                    link(prev, c);
+                }
+                prev = c;
+            }
+        }
+        if (open) {
+            throw error("unbalanced cycle in permutation %s", cycles);
         }
+    }
 
+    /**
+     * Record that I map FROM to TO.
+     */
+    private void link(int from, int to) {
+        _forward[from] = to;
+        _inverse[to] = from;
     }
 
     /**
@@ -78,7 +142,7 @@ class Permutation {
      * Returns the size of the alphabet I permute.
      */
     int size() {
-        return _alphabet.size();
+        return _forward.length;
     }
 
     /**
@@ -86,9 +150,7 @@ class Permutation {
      * alphabet size.
      */
     int permute(int p) {
-        Cycle perm = _cycling[p]._next;
-        int alpha = _alphabet.toInt(perm._value);
-        return alpha;
+        return _forward[wrap(p)];
     }
 
     /**
@@ -96,16 +158,7 @@ class Permutation {
      * to  C modulo the alphabet size.
      */
     int invert(int c) {
-        char find = _alphabet.toChar(c);
-        Cycle toInv = new Cycle('A');
-        for (int x = 0; x < _alphabet.size(); x += 1) {
-            Cycle pos = _cycling[x]._next;
-            if (pos._value == find) {
-                toInv = pos;
-            }
-        }
-        Cycle inverted = toInv._next;
-        return _alphabet.toInt(inverted._value);
+        return _inverse[wrap(c)];
     }
 
     /**
@@ -136,60 +189,12 @@ class Permutation {
      * permutation for which no value maps to itself).
      */
     boolean derangement() {
-        boolean deranged = true;
-        for (int x = 0; x < _alphabet.size() - 1; x += 1) {
-            char a = _cycling[x]._value;
-            Cycle next = _cycling[x]._next;
-            char b = next._value;
-            if (a == b) {
-                deranged = false;
+        for (int x = 0; x < size(); x += 1) {
+            if (_forward[x] == x) {
+                return false;
             }
         }
-        return deranged;
-    }
-
-    /**
-     * Class to initialize permutations and rotor elements.
-     */
-    public static class Cycle {
-        /**
-         * the Value represented as a char.
-         */
-        private char _value;
-        /**
-         * the next and previous day.
-         */
-        private Cycle _next;
-
-        /**
-         * Gets the value of the instance. @return the value
-         */
-        public char getValue() {
-            return _value;
-        }
-
-        /**
-         * Gets the next cycle of the instance. @return the next cycle
-         */
-        public Cycle getNext() {
-            return _next;
-        }
-
-        /**
-         * The initializer for Cycle with VALUE.
-         */
-        Cycle(char value) {
-            _value = value;
-            _next = null;
-        }
-
-        /**
-         * Another initializer for Cycle with VALUE and NEXT.
-         */
-        Cycle(char value, Cycle next) {
-            _value = value;
-            _next = next;
-        }
+        return true;
     }
 
 }
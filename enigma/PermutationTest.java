@@ -80,4 +80,42 @@ public class PermutationTest {
 
 
     }
+    @Test
+    public void testInverseTable() {
+        Permutation c = new Permutation(a, UPPER);
+        for (int x = 0; x < UPPER_STRING.length(); x += 1) {
+            assertEquals(x, c.invert(c.permute(x)));
+            assertEquals(x, c.permute(c.invert(x)));
+        }
+    }
+    @Test(expected = EnigmaException.class)
+    public void testRepeatedCharacter() {
+        new Permutation("(ABC) (CD)", UPPER);
+    }
+    @Test(expected = EnigmaException.class)
+    public void testUnbalancedCycle() {
+        new Permutation("(ABC", UPPER);
+    }
+    @Test
+    public void testFromTables() {
+        Permutation c = new Permutation(a, UPPER);
+        int[] forward = new int[UPPER.size()];
+        int[] inverse = new int[UPPER.size()];
+        for (int x = 0; x < forward.length; x += 1) {
+            forward[x] = c.permute(x);
+            inverse[x] = c.invert(x);
+        }
+        Permutation d = new Permutation(forward, inverse, UPPER);
+        for (int x = 0; x < forward.length; x += 1) {
+            assertEquals(c.permute(x), d.permute(x));
+            assertEquals(c.invert(x), d.invert(x));
+        }
+        forward[0] = forward[1];
+        try {
+            new Permutation(forward, inverse, UPPER);
+            fail("inconsistent tables accepted");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
 }
@@ -0,0 +1,122 @@
+package enigma;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Tests of EnigmaProcessor.
+ *  @author John Schulz
+ */
+public class ProcessorTest {
+
+    /** Input in the format read by Main. */
+    private static final String INPUT =
+        "* B BETA I II III AXLE (AQ) (EP)\n"
+        + "From his shoulder Hiawatha\n\nTook the camera of rosewood,\n"
+        + "* B Beta III II I ZZZZ\nMade of sliding, folding rosewood\n";
+
+    /** Return the result of converting TEXT as Main would. */
+    private static String expected(String text) throws IOException {
+        StringWriter out = new StringWriter();
+        MessageProcessor processor =
+            new MessageProcessor(MachTest.navalMachine("AAAA"),
+                                 TestUtils.UPPER, out);
+        processor.feed(text.toCharArray(), 0, text.length());
+        processor.finish();
+        return out.toString();
+    }
+
+    /**
+     * Return the output of an EnigmaProcessor run on EXECUTOR, fed
+     * TEXT in chunks of 7 characters, to a subscriber that requests
+     * one item at a time.
+     */
+    private static CompletableFuture<String> run(String text,
+                                                 ExecutorService executor) {
+        EnigmaProcessor processor =
+            new EnigmaProcessor(MachTest.navalMachine("AAAA"), executor);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        processor.subscribe(new Flow.Subscriber<String>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                _subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(String item) {
+                _text.append(item);
+                _subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable excp) {
+                result.completeExceptionally(excp);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(_text.toString());
+            }
+
+            /** Output received so far. */
+            private final StringBuilder _text = new StringBuilder();
+            /** Subscription to the processor. */
+            private Flow.Subscription _subscription;
+        });
+        SubmissionPublisher<String> source =
+            new SubmissionPublisher<>(executor, 1);
+        source.subscribe(processor);
+        for (int x = 0; x < text.length(); x += 7) {
+            source.submit(text.substring(x, Math.min(x + 7, text.length())));
+        }
+        source.close();
+        return result;
+    }
+
+    @Test
+    public void testChunks() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertEquals(expected(INPUT),
+                         run(INPUT, executor).get(10, TimeUnit.SECONDS));
+            try {
+                run("NO SETTINGS\n" + INPUT, executor)
+                    .get(10, TimeUnit.SECONDS);
+                fail("message without settings accepted");
+            } catch (ExecutionException excp) {
+                assertTrue(excp.getCause() instanceof EnigmaException);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSingleThread() throws Exception {
+        StringBuilder input = new StringBuilder(INPUT);
+        for (int k = 0; k < 2000; k += 1) {
+            input.append("Made of sliding, folding rosewood\n");
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(expected(input.toString()),
+                         run(input.toString(), executor)
+                         .get(60, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
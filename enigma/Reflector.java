@@ -11,10 +11,16 @@ class Reflector extends FixedRotor {
 
     /**
      * A non-moving rotor named NAME whose permutation at the 0 setting
-     * is PERM.
+     * is PERM.  Since a reflector has only that setting, its conversion
+     * table is just PERM's.
      */
     Reflector(String name, Permutation perm) {
-        super(name, perm);
+        super(name, perm, true);
+    }
+
+    /** A reflector like OTHER, sharing its permutation and table. */
+    Reflector(Reflector other) {
+        super(other);
     }
     @Override
     void set(int posn) {
@@ -23,4 +29,9 @@ class Reflector extends FixedRotor {
         }
     }
 
+    @Override
+    Rotor copy() {
+        return new Reflector(this);
+    }
+
 }
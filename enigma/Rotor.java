@@ -22,8 +22,60 @@ class Rotor {
     }
     /** A rotor named NAME whose permutation is given by PERM. */
     Rotor(String name, Permutation perm) {
+        this(name, perm, false);
+    }
+
+    /** A rotor named NAME whose permutation is given by PERM, which is
+     *  never set to any setting but 0 if ATZERO. */
+    Rotor(String name, Permutation perm, boolean atZero) {
         _name = name;
         _permutation = perm;
+        _size = perm.size();
+        int settings = atZero ? 1 : _size <= PER_SETTING_LIMIT ? _size : 0;
+        _perSetting = settings > 0;
+        _forwardTable = compile(perm, true, settings);
+        _backwardTable = compile(perm, false, settings);
+    }
+
+    /** A rotor like OTHER, at the same setting, sharing its permutation
+     *  and tables. */
+    Rotor(Rotor other) {
+        _name = other._name;
+        _permutation = other._permutation;
+        _size = other._size;
+        _perSetting = other._perSetting;
+        _forwardTable = other._forwardTable;
+        _backwardTable = other._backwardTable;
+        _setting = other._setting;
+        _offset = other._offset;
+    }
+
+    /**
+     * Return the conversion table of PERM (of its inverse unless
+     * FORWARD).  If SETTINGS > 0, the table holds the conversion of each
+     * P at each setting S < SETTINGS at S * size + P; otherwise it holds
+     * the permutation twice over, so that it can be indexed by P + S.
+     */
+    private static int[] compile(Permutation perm, boolean forward,
+                                 int settings) {
+        int n = perm.size();
+        if (settings == 0) {
+            int[] table = new int[2 * n];
+            for (int i = 0; i < n; i += 1) {
+                table[i] = table[i + n] = forward ? perm.permute(i)
+                    : perm.invert(i);
+            }
+            return table;
+        }
+        int[] table = new int[settings * n];
+        for (int s = 0; s < settings; s += 1) {
+            for (int p = 0; p < n; p += 1) {
+                int in = p + s < n ? p + s : p + s - n;
+                int out = (forward ? perm.permute(in) : perm.invert(in)) - s;
+                table[s * n + p] = out < 0 ? out + n : out;
+            }
+        }
+        return table;
     }
 
     /** Return my name. */
@@ -64,29 +116,32 @@ class Rotor {
     /** Set setting() to POSN.  */
     void set(int posn) {
         _setting = posn;
+        _offset = _perSetting ? posn * _size : posn;
     }
 
     /** Set setting() to character CPOSN. */
     void set(char cposn) {
-        _setting = permutation().alphabet().toInt(cposn);
+        set(permutation().alphabet().toInt(cposn));
     }
 
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int orig = _permutation.wrap(p + _setting);
-        int input = _permutation.permute(orig);
-        int output = _permutation.wrap(input - _setting);
-        return output;
+        if (_perSetting) {
+            return _forwardTable[_offset + p];
+        }
+        int out = _forwardTable[_offset + p] - _offset;
+        return out + ((out >> SIGN_SHIFT) & _size);
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int orig = _permutation.wrap(e + _setting);
-        int input = _permutation.invert(orig);
-        int output = _permutation.wrap(input - _setting);
-        return output;
+        if (_perSetting) {
+            return _backwardTable[_offset + e];
+        }
+        int out = _backwardTable[_offset + e] - _offset;
+        return out + ((out >> SIGN_SHIFT) & _size);
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
@@ -99,10 +154,35 @@ class Rotor {
     void advance() {
     }
 
+    /** Return a new rotor like me, with the same setting, that shares my
+     *  permutation. */
+    Rotor copy() {
+        return new Rotor(this);
+    }
+
     @Override
     public String toString() {
         return "Rotor " + _name;
     }
 
+    /** Largest alphabet size for which the conversion tables hold every
+     *  setting (size * size entries each); larger alphabets use tables
+     *  of 2 * size entries and a subtraction. */
+    static final int PER_SETTING_LIMIT = 64;
+
+    /** Shift that turns a negative int into -1 and any other into 0. */
+    private static final int SIGN_SHIFT = Integer.SIZE - 1;
+
+    /** Size of my alphabet. */
+    private final int _size;
+    /** True iff my tables are indexed by setting (see compile).  They
+     *  then hold only setting 0 if I was made to stay at 0. */
+    private final boolean _perSetting;
+    /** Conversion tables of my permutation and its inverse (see
+     *  compile). */
+    private final int[] _forwardTable, _backwardTable;
+    /** Index in my tables of the conversions at my current setting:
+     *  _setting * _size if _perSetting, else _setting. */
+    private int _offset;
 
 }
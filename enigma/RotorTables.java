@@ -0,0 +1,139 @@
+package enigma;
+
+import java.util.List;
+
+/**
+ * The rotors of a machine's catalog as flat tables of ints, for the
+ * engines that convert without Rotor objects (see MachineCursor,
+ * LaneBatch and KeyBatch).  forward() and backward() hold the
+ * permutation and inverse of catalog rotor R at R * size(), notches()
+ * holds 1 at R * size() + P iff rotor R rotates and has a notch at P,
+ * and rotates() holds 1 at R iff rotor R rotates.  A rotor is then
+ * identified by its base, R * size().  The arrays returned are mine,
+ * not copies, and must not be modified.
+ *
+ * @author John Schulz
+ */
+class RotorTables {
+
+    /** The tables of the catalog of SPEC. */
+    RotorTables(MachineSpec spec) {
+        _size = spec.alphabet().size();
+        List<Rotor> catalog = spec.catalog();
+        _count = catalog.size();
+        _forward = new int[_count * _size];
+        _backward = new int[_count * _size];
+        _notches = new int[_count * _size];
+        _rotates = new int[_count];
+        for (int r = 0; r < _count; r += 1) {
+            Rotor rotor = catalog.get(r);
+            Permutation perm = rotor.permutation();
+            for (int c = 0; c < _size; c += 1) {
+                _forward[r * _size + c] = perm.permute(c);
+                _backward[r * _size + c] = perm.invert(c);
+            }
+            if (rotor instanceof MovingRotor) {
+                _rotates[r] = 1;
+                boolean[] mask = ((MovingRotor) rotor).notchMask();
+                for (int p = 0; p < _size; p += 1) {
+                    _notches[r * _size + p] = mask[p] ? 1 : 0;
+                }
+            }
+        }
+    }
+
+    /** Return the size of the alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of rotors in the catalog. */
+    int count() {
+        return _count;
+    }
+
+    /** Return the forward tables. */
+    int[] forward() {
+        return _forward;
+    }
+
+    /** Return the inverse tables. */
+    int[] backward() {
+        return _backward;
+    }
+
+    /** Return the notch tables. */
+    int[] notches() {
+        return _notches;
+    }
+
+    /** Return the rotation flags. */
+    int[] rotates() {
+        return _rotates;
+    }
+
+    /** Return true iff the rotor with base BASE rotates. */
+    boolean rotates(int base) {
+        return _rotates[base / _size] != 0;
+    }
+
+    /**
+     * Advance the N rotors whose bases are BASE[0 .. N - 1] (reflector
+     * first), whose settings are POS[0 .. N - 1] and for which
+     * ROTATING[X] is true iff rotor X rotates, as Machine.step does.
+     * The notches are all examined before any rotor moves.
+     */
+    void step(int[] base, int[] pos, boolean[] rotating, int n) {
+        boolean right = true;
+        for (int x = n - 1; x >= 0; x -= 1) {
+            boolean advance = right, notch = false;
+            if (x > 0) {
+                notch = _notches[base[x] + pos[x]] != 0;
+                advance |= notch && rotating[x - 1];
+            }
+            if (advance && rotating[x]) {
+                pos[x] = pos[x] + 1 == _size ? 0 : pos[x] + 1;
+            }
+            right = notch;
+        }
+    }
+
+    /**
+     * Return the result of passing C through the N rotors whose bases
+     * are BASE[0 .. N - 1] and whose settings are POS[0 .. N - 1], from
+     * right to left, through the reflector, and back, as
+     * Machine.substitute does without the plugboard.
+     */
+    int substitute(int[] base, int[] pos, int n, int c) {
+        int size = _size;
+        for (int x = n - 1; x >= 0; x -= 1) {
+            c = through(_forward, base[x], pos[x], c, size);
+        }
+        for (int x = 1; x < n; x += 1) {
+            c = through(_backward, base[x], pos[x], c, size);
+        }
+        return c;
+    }
+
+    /**
+     * Return the result of passing C through the rotor whose table
+     * starts at TABLE[BASE], at setting POS, for an alphabet of SIZE
+     * characters.
+     */
+    private static int through(int[] table, int base, int pos, int c,
+                               int size) {
+        int in = c + pos;
+        if (in >= size) {
+            in -= size;
+        }
+        int out = table[base + in] - pos;
+        return out < 0 ? out + size : out;
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Number of rotors. */
+    private final int _count;
+    /** The tables (see class comment). */
+    private final int[] _forward, _backward, _notches, _rotates;
+}
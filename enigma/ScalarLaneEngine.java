@@ -0,0 +1,35 @@
+package enigma;
+
+/** A LaneEngine that converts one message at a time, with the same
+ *  tables and arithmetic as VectorLaneEngine uses in each lane.
+ *  @author John Schulz
+ */
+class ScalarLaneEngine implements LaneEngine {
+
+    @Override
+    public void convert(LaneBatch batch) {
+        RotorTables tables = batch.tables();
+        int size = batch.size(), n = batch.numRotors();
+        int[] bases = batch.rotorBases(), positions = batch.positions(),
+            plugForward = batch.plugForward(),
+            plugBackward = batch.plugBackward(), text = batch.text();
+        int[] base = new int[n], pos = new int[n];
+        boolean[] rotating = new boolean[n];
+        for (int k = 0; k < batch.count(); k += 1) {
+            int slots = k * n, plugs = k * size;
+            for (int x = 0; x < n; x += 1) {
+                base[x] = bases[slots + x];
+                pos[x] = positions[slots + x];
+                rotating[x] = tables.rotates(base[x]);
+            }
+            int end = batch.start(k) + batch.length(k);
+            for (int i = batch.start(k); i < end; i += 1) {
+                tables.step(base, pos, rotating, n);
+                int c = tables.substitute(base, pos, n,
+                                          plugForward[plugs + text[i]]);
+                text[i] = plugBackward[plugs + c];
+            }
+            System.arraycopy(pos, 0, positions, slots, n);
+        }
+    }
+}
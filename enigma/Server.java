@@ -0,0 +1,194 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * A server that converts messages for clients connecting to a local
+ * socket, so that the configuration is read (and the code warmed up)
+ * only once.  Each connection speaks the input format of Main, encoded
+ * in UTF-8: settings lines, message lines and blank lines, to which the
+ * server replies with the converted lines as Main would print them.
+ * Replies are sent whenever the server has consumed all the input the
+ * client has sent so far.  After an error, the server sends a line
+ * "Error: MESSAGE" and closes the connection.
+ *
+ * Each connection is handled on its own thread (a virtual thread where
+ * the Java runtime provides them) with its own copy of the configured
+ * machine.
+ *
+ * @author John Schulz
+ */
+class Server implements Closeable {
+
+    /**
+     * A server converting messages with copies of PROTO, whose alphabet
+     * is ALPHABET, listening at ADDRESS: either "unix:PATH", for a
+     * Unix-domain socket at PATH, or a port number, for a TCP socket on
+     * the loopback interface (port 0 picks a free port).  PROTO must not
+     * be changed while I am open.
+     */
+    Server(Machine proto, Alphabet alphabet, String address) {
+        _proto = proto;
+        _alphabet = alphabet;
+        try {
+            if (address.startsWith(UNIX_PREFIX)) {
+                _socketPath =
+                    Path.of(address.substring(UNIX_PREFIX.length()));
+                _listener =
+                    ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+                _listener.bind(UnixDomainSocketAddress.of(_socketPath),
+                               BACKLOG);
+            } else {
+                _socketPath = null;
+                _listener = ServerSocketChannel.open();
+                _listener.bind(new InetSocketAddress(
+                                   InetAddress.getLoopbackAddress(),
+                                   Integer.parseInt(address)),
+                               BACKLOG);
+            }
+        } catch (IOException | IllegalArgumentException
+                 | UnsupportedOperationException excp) {
+            throw error("could not listen on %s: %s", address, excp);
+        }
+        _connections = newConnectionExecutor();
+    }
+
+    /** Return the address on which I listen. */
+    SocketAddress address() {
+        try {
+            return _listener.getLocalAddress();
+        } catch (IOException excp) {
+            throw error("server closed");
+        }
+    }
+
+    /**
+     * Accept and handle connections until I am closed.
+     */
+    void serve() {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = _listener.accept();
+            } catch (ClosedChannelException excp) {
+                return;
+            } catch (IOException excp) {
+                throw error("could not accept connection: %s", excp);
+            }
+            _connections.execute(() -> handle(client));
+        }
+    }
+
+    /**
+     * Stop accepting connections.  Connections being handled are
+     * allowed to finish.
+     */
+    @Override
+    public void close() {
+        try {
+            _listener.close();
+            if (_socketPath != null) {
+                Files.deleteIfExists(_socketPath);
+            }
+        } catch (IOException excp) {
+            /* Nothing more to be done. */
+        }
+        _connections.shutdown();
+    }
+
+    /**
+     * Convert the messages sent by CLIENT, replying to it, and close it.
+     */
+    private void handle(SocketChannel client) {
+        try (SocketChannel channel = client) {
+            Reader in = new InputStreamReader(Channels.newInputStream(channel),
+                                              StandardCharsets.UTF_8);
+            Writer out =
+                new OutputStreamWriter(Channels.newOutputStream(channel),
+                                       StandardCharsets.UTF_8);
+            MessageProcessor processor =
+                new MessageProcessor(_proto.copy(), _alphabet, out);
+            char[] buf = new char[MessageProcessor.BUFFER_SIZE];
+            try {
+                for (int n = in.read(buf); n != -1; n = in.read(buf)) {
+                    processor.feed(buf, 0, n);
+                    if (!in.ready()) {
+                        processor.flush();
+                        out.flush();
+                    }
+                }
+                processor.finish();
+            } catch (RuntimeException excp) {
+                processor.close();
+                out.write(String.format("Error: %s%n",
+                                        excp instanceof EnigmaException
+                                        ? excp.getMessage() : excp));
+            }
+            out.flush();
+        } catch (IOException excp) {
+            /* The client has gone away. */
+        }
+    }
+
+    /**
+     * Return an executor that runs each task on a new virtual thread if
+     * the runtime supports them, and otherwise on a pooled daemon
+     * thread.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            Method virtual =
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException excp) {
+            return Executors.newCachedThreadPool((r) -> {
+                Thread t = new Thread(r, "enigma-connection");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /** Prototype of each connection's machine. */
+    private final Machine _proto;
+
+    /** Alphabet of _proto. */
+    private final Alphabet _alphabet;
+
+    /** Socket on which I accept connections. */
+    private final ServerSocketChannel _listener;
+
+    /** File of my Unix-domain socket, or null for TCP. */
+    private final Path _socketPath;
+
+    /** Runs the handlers of connections. */
+    private final ExecutorService _connections;
+
+    /** Prefix of addresses of Unix-domain sockets. */
+    static final String UNIX_PREFIX = "unix:";
+
+    /** Number of pending connections the listener may queue. */
+    private static final int BACKLOG = 1024;
+}
@@ -0,0 +1,88 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests of Server, run on the loopback interface.
+ *  @author John Schulz
+ */
+public class ServerTest {
+    /** Testing time limit, so that a server that stops answering fails
+     *  the test rather than hanging it. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return a server on a free loopback port, serving in the
+     *  background. */
+    private Server startServer() {
+        Server server = new Server(MachTest.navalMachine("AAAA"),
+                                   TestUtils.UPPER, "0");
+        Thread t = new Thread(server::serve);
+        t.setDaemon(true);
+        t.start();
+        return server;
+    }
+
+    /** Return a connection to SERVER. */
+    private Socket connect(Server server) throws Exception {
+        InetSocketAddress addr = (InetSocketAddress) server.address();
+        return new Socket(addr.getAddress(), addr.getPort());
+    }
+
+    @Test
+    public void testRequests() throws Exception {
+        try (Server server = startServer();
+             Socket a = connect(server); Socket b = connect(server)) {
+            Writer outA = new OutputStreamWriter(a.getOutputStream(),
+                                                 StandardCharsets.UTF_8);
+            Writer outB = new OutputStreamWriter(b.getOutputStream(),
+                                                 StandardCharsets.UTF_8);
+            BufferedReader inA =
+                new BufferedReader(new InputStreamReader(a.getInputStream(),
+                                                         StandardCharsets
+                                                         .UTF_8));
+            BufferedReader inB =
+                new BufferedReader(new InputStreamReader(b.getInputStream(),
+                                                         StandardCharsets
+                                                         .UTF_8));
+            outA.write("* B BETA I II III AAAA\nHello world\n");
+            outA.flush();
+            outB.write("* B Beta I II III AAAA\n\nHELLO\n");
+            outB.flush();
+            assertEquals("ILBDA AMTAZ", inA.readLine().trim());
+            assertEquals("", inB.readLine());
+            assertEquals("ILBDA", inB.readLine().trim());
+            outA.write("WORLD\n");
+            outA.flush();
+            assertEquals(5, inA.readLine().trim().length());
+        }
+    }
+
+    @Test
+    public void testError() throws Exception {
+        try (Server server = startServer(); Socket a = connect(server)) {
+            Writer out = new OutputStreamWriter(a.getOutputStream(),
+                                                StandardCharsets.UTF_8);
+            BufferedReader in =
+                new BufferedReader(new InputStreamReader(a.getInputStream(),
+                                                         StandardCharsets
+                                                         .UTF_8));
+            out.write("HELLO\n");
+            out.flush();
+            assertTrue(in.readLine().startsWith("Error:"));
+            assertEquals(null, in.readLine());
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import static enigma.EnigmaException.error;
+
+/**
+ * A ciphertext-only key search in the manner of Gillogly's attack on
+ * the Enigma.  First, every rotor order allowed by the catalog (see
+ * Machine.rotorOrders) is tried at every start position with an empty
+ * plugboard, and the keys whose decryptions have the greatest index of
+ * coincidence are kept.  Then the plugboard of each of those keys is
+ * found by hill climbing: two letters are plugged together (undoing
+ * their previous connections, or unplugging them if they were already
+ * together) whenever that improves the score of the decryption, until
+ * no such change helps.  The climb is scored first by index of
+ * coincidence and then, if n-gram statistics are given, by n-gram score
+ * (see NgramTable).  The keys are reported best first.
+ *
+ * Both stages are divided among the threads of a ForkJoinPool.  Trial
+ * decryptions are made by a KeyBatch of each thread, so that nothing is
+ * allocated per key.  While climbing, the rotors' substitution at
+ * each position of the message is tabulated once, so that each trial
+ * plugboard costs only table lookups; the climb takes time proportional
+ * to the square of the alphabet size times the length of the message.
+ *
+ * @author John Schulz
+ */
+class Solver {
+
+    /**
+     * A search for the keys of MACHINE (whose current rotors and
+     * plugboard are ignored) under which CIPHER, a string of characters
+     * in the machine's alphabet, decrypts to plausible text, scored with
+     * NGRAMS (null to use only the index of coincidence).
+     */
+    Solver(Machine machine, String cipher, NgramTable ngrams) {
+        Alphabet alpha = machine.alphabet();
+        _size = alpha.size();
+        if (cipher.isEmpty()) {
+            throw error("no ciphertext");
+        }
+        if ((long) _size * cipher.length() > MAX_TABLE) {
+            throw error("ciphertext too long for plugboard search");
+        }
+        _base = machine.copy();
+        _base.setPlugboard(new Permutation("", alpha));
+        _ngrams = ngrams;
+        _cipher = new int[cipher.length()];
+        for (int i = 0; i < _cipher.length; i += 1) {
+            _cipher[i] = alpha.toInt(cipher.charAt(i));
+        }
+        _orders = _base.rotorOrders();
+        _positions = _base.numPositions();
+        if (_orders.size() > Long.MAX_VALUE / _positions) {
+            throw error("too many keys to search");
+        }
+        _keyBatches = ThreadLocal.withInitial(
+            () -> new KeyBatch(_base, (int) TASK_KEYS));
+        _keyCounts = ThreadLocal.withInitial(
+            () -> new int[(int) TASK_KEYS * _size]);
+    }
+
+    /**
+     * Search using the threads of POOL, and return the best COUNT keys
+     * found, best first.
+     */
+    List<Solution> solve(ForkJoinPool pool, int count) {
+        int keep = Math.max(count, CLIMB_KEYS);
+        Best best = pool.invoke(new SearchTask(0, _orders.size(), 0,
+                                               _positions, keep));
+        long[] keys = best.keys();
+        Solution[] solutions = new Solution[keys.length];
+        pool.invoke(new ClimbTask(keys, solutions, 0, keys.length));
+        Arrays.sort(solutions, (a, b) -> a._score != b._score
+                    ? Long.compare(b._score, a._score)
+                    : Long.compare(a._key, b._key));
+        return new ArrayList<>(Arrays.asList(solutions)
+                               .subList(0, Math.min(count, keys.length)));
+    }
+
+    /** Return the number of keys tried so far. */
+    long keysTried() {
+        return _tried.sum();
+    }
+
+    /** Return the number of keys in the search space. */
+    long keys() {
+        return _orders.size() * _positions;
+    }
+
+    /**
+     * Return the sum of N * (N - 1) over the numbers N of occurrences of
+     * each character in TEXT[0 .. LEN - 1], using COUNTS, of length
+     * _size, as scratch space.  This is the index of coincidence of the
+     * text, scaled by LEN * (LEN - 1).
+     */
+    private static long coincidences(int[] text, int len, int[] counts) {
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < len; i += 1) {
+            counts[text[i]] += 1;
+        }
+        long total = 0;
+        for (int n : counts) {
+            total += (long) n * (n - 1);
+        }
+        return total;
+    }
+
+    /**
+     * Find the keys with rotor orders ORDERLO .. ORDERHI - 1 and start
+     * positions POSLO .. POSHI - 1 whose decryptions have the greatest
+     * index of coincidence, splitting the work into subtasks if there
+     * is much of it.
+     */
+    private class SearchTask extends RecursiveTask<Best> {
+        /** A task searching rotor orders ORDERLO .. ORDERHI - 1 at start
+         *  positions POSLO .. POSHI - 1, keeping the best KEEP keys. */
+        SearchTask(int orderLo, int orderHi, long posLo, long posHi,
+                   int keep) {
+            _orderLo = orderLo;
+            _orderHi = orderHi;
+            _posLo = posLo;
+            _posHi = posHi;
+            _keep = keep;
+        }
+
+        @Override
+        protected Best compute() {
+            SearchTask left, right;
+            if (_orderHi - _orderLo > 1) {
+                int mid = (_orderLo + _orderHi) >>> 1;
+                left = new SearchTask(_orderLo, mid, _posLo, _posHi, _keep);
+                right = new SearchTask(mid, _orderHi, _posLo, _posHi, _keep);
+            } else if (_posHi - _posLo > TASK_KEYS) {
+                long mid = (_posLo + _posHi) >>> 1;
+                left = new SearchTask(_orderLo, _orderHi, _posLo, mid, _keep);
+                right = new SearchTask(_orderLo, _orderHi, mid, _posHi,
+                                       _keep);
+            } else {
+                Best best = new Best(_keep);
+                if (_orderHi > _orderLo) {
+                    tryKeys(_orderLo, _posLo, _posHi, best);
+                }
+                return best;
+            }
+            left.fork();
+            Best best = right.compute();
+            best.addAll(left.join());
+            return best;
+        }
+
+        /** Range of rotor orders. */
+        private final int _orderLo, _orderHi;
+        /** Range of start positions. */
+        private final long _posLo, _posHi;
+        /** Number of keys to keep. */
+        private final int _keep;
+        /** Serialization version (tasks are never serialized). */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Try rotor order number ORDER at start positions POSLO .. POSHI - 1
+     * with an empty plugboard, adding the keys to BEST.  The keys are
+     * decrypted together by this thread's KeyBatch.
+     */
+    private void tryKeys(int order, long posLo, long posHi, Best best) {
+        KeyBatch keys = _keyBatches.get();
+        int[] counts = _keyCounts.get();
+        int[] bases = keys.rotorBases(_orders.get(order));
+        keys.clear();
+        for (long pos = posLo; pos < posHi; pos += 1) {
+            keys.add(bases, pos, null);
+        }
+        int size = _size;
+        Arrays.fill(counts, 0, keys.count() * size, 0);
+        keys.decrypt(_cipher, _cipher.length, (k, plain, at, len) -> {
+            for (int i = 0; i < len; i += 1) {
+                counts[k * size + plain[i]] += 1;
+            }
+            return true;
+        });
+        for (int k = 0; k < keys.count(); k += 1) {
+            long total = 0;
+            for (int c = k * size; c < (k + 1) * size; c += 1) {
+                total += (long) counts[c] * (counts[c] - 1);
+            }
+            best.add(total, order * _positions + posLo + k);
+        }
+        _tried.add(posHi - posLo);
+    }
+
+    /** Climbs the plugboards of KEYS[LO .. HI - 1], storing the results
+     *  in the corresponding elements of SOLUTIONS. */
+    private class ClimbTask extends RecursiveAction {
+        /** A task finding the plugboards of KEYS[LO .. HI - 1], storing
+         *  the results in SOLUTIONS. */
+        ClimbTask(long[] keys, Solution[] solutions, int lo, int hi) {
+            _keys = keys;
+            _solutions = solutions;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new ClimbTask(_keys, _solutions, _lo, mid),
+                          new ClimbTask(_keys, _solutions, mid, _hi));
+            } else if (_hi > _lo) {
+                _solutions[_lo] = new Climber(_keys[_lo]).climb();
+            }
+        }
+
+        /** Keys to climb. */
+        private final long[] _keys;
+        /** Results, by index in _keys. */
+        private final Solution[] _solutions;
+        /** Range of indices in _keys. */
+        private final int _lo, _hi;
+        /** Serialization version (tasks are never serialized). */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** Finds the plugboard of one key by hill climbing. */
+    private class Climber {
+        /** A climber for key number KEY (see Best). */
+        Climber(long key) {
+            _key = key;
+            Machine m = _base.copy();
+            m.insertRotors(_orders.get((int) (key / _positions)));
+            m.setPosition(key % _positions);
+            int len = _cipher.length;
+            _table = new int[len * _size];
+            for (int i = 0; i < len; i += 1) {
+                m.step();
+                for (int c = 0; c < _size; c += 1) {
+                    _table[i * _size + c] = m.substitute(c);
+                }
+            }
+            _plain = new int[len];
+            _counts = new int[_size];
+            _plugs = new int[_size];
+            for (int a = 0; a < _size; a += 1) {
+                _plugs[a] = a;
+            }
+        }
+
+        /** Return the key with the best plugboard found. */
+        Solution climb() {
+            long score = climb(false);
+            if (_ngrams != null) {
+                score = climb(true);
+            }
+            return new Solution(_key, score, _plugs, _plain);
+        }
+
+        /**
+         * Improve _plugs as long as a change of one pair improves the
+         * score of the decryption, by n-grams iff NGRAMS, else by index
+         * of coincidence.  Return the final score, leaving the
+         * decryption in _plain.
+         */
+        private long climb(boolean ngrams) {
+            int[] plugs = _plugs;
+            long best = score(ngrams);
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int a = 0; a < _size; a += 1) {
+                    for (int b = a + 1; b < _size; b += 1) {
+                        int pa = plugs[a], pb = plugs[b];
+                        if (pa == b) {
+                            plugs[a] = a;
+                            plugs[b] = b;
+                        } else {
+                            plugs[pa] = pa;
+                            plugs[pb] = pb;
+                            plugs[a] = b;
+                            plugs[b] = a;
+                        }
+                        long score = score(ngrams);
+                        if (score > best) {
+                            best = score;
+                            improved = true;
+                        } else {
+                            plugs[a] = a;
+                            plugs[b] = b;
+                            plugs[pa] = a;
+                            plugs[a] = pa;
+                            plugs[pb] = b;
+                            plugs[b] = pb;
+                        }
+                    }
+                }
+            }
+            score(ngrams);
+            return best;
+        }
+
+        /**
+         * Decrypt the message into _plain with plugboard _plugs and
+         * return its score, by n-grams iff NGRAMS, else by index of
+         * coincidence.
+         */
+        private long score(boolean ngrams) {
+            int[] plugs = _plugs, table = _table, cipher = _cipher,
+                plain = _plain;
+            int size = _size;
+            for (int i = 0, row = 0; i < plain.length; i += 1, row += size) {
+                plain[i] = plugs[table[row + plugs[cipher[i]]]];
+            }
+            if (ngrams) {
+                return _ngrams.score(plain, plain.length);
+            }
+            return coincidences(plain, plain.length, _counts);
+        }
+
+        /** Number of the key being climbed. */
+        private final long _key;
+        /** _table[I * _size + C] is the rotors' substitution of C at
+         *  message position I. */
+        private final int[] _table;
+        /** The current decryption. */
+        private final int[] _plain;
+        /** Scratch space for coincidences. */
+        private final int[] _counts;
+        /** The current plugboard: _plugs[A] is the partner of A. */
+        private final int[] _plugs;
+    }
+
+    /**
+     * The keys with the greatest scores among those added, up to a fixed
+     * number, held in a heap whose root is the worst.  Of keys with equal
+     * scores, lower-numbered ones are preferred, so that the result does
+     * not depend on how the search is divided.  Key number K has rotor
+     * order K / _positions and start position K % _positions.
+     */
+    private static class Best {
+        /** An empty set of at most CAPACITY keys. */
+        Best(int capacity) {
+            _scores = new long[capacity];
+            _keys = new long[capacity];
+        }
+
+        /** Add key KEY with score SCORE, dropping the worst key if I am
+         *  full. */
+        void add(long score, long key) {
+            if (_count < _keys.length) {
+                _scores[_count] = score;
+                _keys[_count] = key;
+                _count += 1;
+                for (int k = _count - 1; k > 0; k = (k - 1) / 2) {
+                    int parent = (k - 1) / 2;
+                    if (!better(parent, k)) {
+                        break;
+                    }
+                    swap(k, parent);
+                }
+            } else if (_count > 0 && (score > _scores[0]
+                                      || score == _scores[0]
+                                      && key < _keys[0])) {
+                _scores[0] = score;
+                _keys[0] = key;
+                for (int k = 0; 2 * k + 1 < _count; ) {
+                    int child = 2 * k + 1;
+                    if (child + 1 < _count && better(child, child + 1)) {
+                        child += 1;
+                    }
+                    if (!better(k, child)) {
+                        break;
+                    }
+                    swap(k, child);
+                    k = child;
+                }
+            }
+        }
+
+        /** Add the keys of OTHER. */
+        void addAll(Best other) {
+            for (int k = 0; k < other._count; k += 1) {
+                add(other._scores[k], other._keys[k]);
+            }
+        }
+
+        /** Return my keys. */
+        long[] keys() {
+            return Arrays.copyOf(_keys, _count);
+        }
+
+        /** Return true iff entry J is better than entry K. */
+        private boolean better(int j, int k) {
+            return _scores[j] > _scores[k]
+                || _scores[j] == _scores[k] && _keys[j] < _keys[k];
+        }
+
+        /** Exchange entries J and K. */
+        private void swap(int j, int k) {
+            long score = _scores[j], key = _keys[j];
+            _scores[j] = _scores[k];
+            _keys[j] = _keys[k];
+            _scores[k] = score;
+            _keys[k] = key;
+        }
+
+        /** Scores and numbers of the keys. */
+        private final long[] _scores, _keys;
+        /** Number of keys held. */
+        private int _count;
+    }
+
+    /** A key found by the search. */
+    class Solution {
+        /** Key number KEY (see Best), with score SCORE, plugboard
+         *  partners PLUGS, and decryption PLAIN (as alphabet
+         *  indices). */
+        Solution(long key, long score, int[] plugs, int[] plain) {
+            _key = key;
+            _score = score;
+            Alphabet alpha = _base.alphabet();
+            _setting = _base.positionSetting(key % _positions);
+            StringBuilder pairs = new StringBuilder();
+            for (int a = 0; a < plugs.length; a += 1) {
+                if (plugs[a] > a) {
+                    pairs.append(" (").append(alpha.toChar(a))
+                        .append(alpha.toChar(plugs[a])).append(')');
+                }
+            }
+            _plugboard = pairs.toString();
+            char[] text = new char[plain.length];
+            for (int i = 0; i < plain.length; i += 1) {
+                text[i] = alpha.toChar(plain[i]);
+            }
+            _plaintext = new String(text);
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] rotors() {
+            return _orders.get((int) (_key / _positions)).clone();
+        }
+
+        /** Return my start position, as for Machine.setRotors. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return my plugboard pairs, as for a settings line. */
+        String plugboard() {
+            return _plugboard.trim();
+        }
+
+        /** Return the score of my decryption: its n-gram score if there
+         *  are n-gram statistics, else its scaled index of
+         *  coincidence. */
+        long score() {
+            return _score;
+        }
+
+        /** Return the decryption of the message under me. */
+        String plaintext() {
+            return _plaintext;
+        }
+
+        /** Return me as a settings line of Main's input. */
+        @Override
+        public String toString() {
+            return "* " + String.join(" ", rotors()) + " " + _setting
+                + _plugboard;
+        }
+
+        /** My number. */
+        private final long _key;
+        /** Score of my decryption. */
+        private final long _score;
+        /** Start position. */
+        private final String _setting;
+        /** Plugboard pairs, each preceded by a blank. */
+        private final String _plugboard;
+        /** Decryption of the message. */
+        private final String _plaintext;
+    }
+
+    /** Number of keys in the smallest search task. */
+    private static final long TASK_KEYS = 1 << 12;
+
+    /** Least number of keys kept from the search for climbing. */
+    static final int CLIMB_KEYS = 100;
+
+    /** Largest number of entries in a climber's substitution table. */
+    private static final long MAX_TABLE = 1 << 26;
+
+    /** Machine from which those of the tasks are copied. */
+    private final Machine _base;
+    /** Size of the alphabet. */
+    private final int _size;
+    /** The ciphertext, as alphabet indices. */
+    private final int[] _cipher;
+    /** N-gram statistics, or null. */
+    private final NgramTable _ngrams;
+    /** The rotor orders to be tried. */
+    private final List<String[]> _orders;
+    /** Number of start positions of each rotor order. */
+    private final long _positions;
+    /** Number of keys tried. */
+    private final LongAdder _tried = new LongAdder();
+    /** Each thread's set of keys to decrypt. */
+    private final ThreadLocal<KeyBatch> _keyBatches;
+    /** Each thread's character counts, _size per key of its KeyBatch. */
+    private final ThreadLocal<int[]> _keyCounts;
+}
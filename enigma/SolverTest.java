@@ -0,0 +1,54 @@
+package enigma;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests of Solver and NgramTable.
+ *  @author John Schulz
+ */
+public class SolverTest {
+
+    /** Plaintext of the test message. */
+    private static final String PLAIN =
+        "ITWASTHEBESTOFTIMESITWASTHEWORSTOFTIMESITWASTHEAGEOFWISDOM"
+        + "ITWASTHEAGEOFFOOLISHNESSITWASTHEEPOCHOFBELIEFITWASTHEEPOCH"
+        + "OFINCREDULITYITWASTHESEASONOFLIGHTITWASTHESEASONOFDARKNESS"
+        + "ITWASTHESPRINGOFHOPEITWASTHEWINTEROFDESPAIRWEHADEVERYTHING"
+        + "BEFOREUSWEHADNOTHINGBEFOREUSWEWEREALLGOINGDIRECTTOHEAVEN"
+        + "WEWEREALLGOINGDIRECTTHEOTHERWAYINSHORTTHEPERIODWASSOFAR"
+        + "LIKETHEPRESENTPERIODTHATSOMEOFITSNOISIESTAUTHORITIES";
+
+    @Test
+    public void testFindsKey() {
+        Machine mach = BombeTest.smallMachine();
+        mach.insertRotors(new String[] {"B", "III", "I"});
+        mach.setRotors("KP");
+        mach.setPlugboard(new Permutation("(AT) (BK) (MZ)",
+                                          TestUtils.UPPER));
+        String cipher = mach.convert(PLAIN);
+
+        Solver solver = new Solver(BombeTest.smallMachine(), cipher,
+                                   NgramTable.english(TestUtils.UPPER));
+        List<Solver.Solution> found = solver.solve(new ForkJoinPool(2), 3);
+        assertEquals(6 * 26 * 26, solver.keysTried());
+        assertEquals(3, found.size());
+        assertEquals("* B III I KP (AT) (BK) (MZ)", found.get(0).toString());
+        assertEquals(PLAIN, found.get(0).plaintext());
+    }
+
+    @Test
+    public void testNgramScore() {
+        NgramTable table = NgramTable.train(TestUtils.UPPER, "ABABAB");
+        assertEquals(3, table.length());
+        int[] seen = {0, 1, 0, 1}, unseen = {2, 2, 2, 2};
+        assertEquals(2 * Math.round(1000 * Math.log10(0.5)),
+                     table.score(seen, seen.length));
+        assertTrue(table.score(unseen, unseen.length)
+                   < table.score(seen, seen.length));
+    }
+}
@@ -0,0 +1,89 @@
+package enigma;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/** Tests of the stream adapters EnigmaReader, EnigmaWriter,
+ *  EnigmaInputStream and EnigmaOutputStream.
+ *  @author John Schulz
+ */
+public class StreamTest {
+
+    /** A message with characters outside the alphabet. */
+    private static final String MSG =
+        "From his shoulder Hiawatha\nTook the camera of rosewood,";
+
+    /** The letters of MSG, upper-cased. */
+    private static final String LETTERS =
+        MSG.toUpperCase().replaceAll("[^A-Z]", "");
+
+    /** Return the expected encryption of MSG, in groups of GROUP. */
+    private static String expected(int group) {
+        String plain = MachTest.navalMachine("AXLE").convert(LETTERS);
+        if (group == 0) {
+            return plain;
+        }
+        return plain.replaceAll("(.{" + group + "})(?!$)", "$1 ");
+    }
+
+    @Test
+    public void testWriter() throws IOException {
+        StringWriter out = new StringWriter();
+        Writer writer =
+            new EnigmaWriter(out, MachTest.navalMachine("AXLE"), 5);
+        writer.write(MSG, 0, 7);
+        writer.flush();
+        assertEquals(expected(5).substring(0, 7), out.toString());
+        writer.write(MSG.substring(7).toCharArray());
+        writer.close();
+        assertEquals(expected(5), out.toString());
+    }
+
+    @Test
+    public void testReader() throws IOException {
+        Reader reader = new EnigmaReader(new StringReader(MSG),
+                                         MachTest.navalMachine("AXLE"));
+        StringBuilder result = new StringBuilder();
+        char[] buf = new char[3];
+        for (int n = reader.read(buf); n != -1; n = reader.read(buf)) {
+            result.append(buf, 0, n);
+        }
+        assertEquals(expected(0), result.toString());
+    }
+
+    @Test
+    public void testByteStreams() throws IOException {
+        byte[] bytes =
+            ("\u00e9t\u00e9 " + MSG).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputStream out =
+            new EnigmaOutputStream(sink, StandardCharsets.UTF_8,
+                                   MachTest.navalMachine("AXLE"), 4);
+        for (byte b : bytes) {
+            out.write(b);
+        }
+        out.close();
+        String etc = MachTest.navalMachine("AXLE").convert("T" + LETTERS);
+        assertEquals(etc.replaceAll("(.{4})(?!$)", "$1 "),
+                     sink.toString(StandardCharsets.UTF_8));
+
+        InputStream in =
+            new EnigmaInputStream(new ByteArrayInputStream(bytes),
+                                  StandardCharsets.UTF_8,
+                                  MachTest.navalMachine("AXLE"), 0);
+        assertEquals(etc, new String(in.readAllBytes(),
+                                     StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,90 @@
+package enigma;
+
+import java.util.Arrays;
+
+/**
+ * A bounded cache of substitution tables keyed by a packed machine state.
+ * Keys are non-negative longs; lookups allocate nothing.  When the cache
+ * fills, it is simply emptied and refilled.
+ *
+ * @author John Schulz
+ */
+class SubstitutionCache {
+
+    /**
+     * A cache holding at most MAXENTRIES tables.
+     */
+    SubstitutionCache(int maxEntries) {
+        _maxEntries = Math.max(1, maxEntries);
+        int cap = Integer.highestOneBit(_maxEntries) * 4;
+        _keys = new long[cap];
+        _tables = new int[cap][];
+        clear();
+    }
+
+    /**
+     * Return the table stored under KEY, or null if there is none.
+     */
+    int[] get(long key) {
+        int mask = _keys.length - 1;
+        for (int h = hash(key); _keys[h] != EMPTY; h = (h + 1) & mask) {
+            if (_keys[h] == key) {
+                return _tables[h];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store TABLE under KEY, which must not already be present.
+     */
+    void put(long key, int[] table) {
+        if (_size == _maxEntries) {
+            clear();
+        }
+        int mask = _keys.length - 1;
+        int h = hash(key);
+        while (_keys[h] != EMPTY) {
+            h = (h + 1) & mask;
+        }
+        _keys[h] = key;
+        _tables[h] = table;
+        _size += 1;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void clear() {
+        Arrays.fill(_keys, EMPTY);
+        Arrays.fill(_tables, null);
+        _size = 0;
+    }
+
+    /**
+     * Return the number of tables currently cached.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Return the home slot of KEY.
+     */
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (_keys.length - 1);
+    }
+
+    /** Marks an unused slot in _keys. */
+    private static final long EMPTY = -1L;
+
+    /** Maximum number of entries before the cache is emptied. */
+    private final int _maxEntries;
+    /** Open-addressed (linear probing) keys; EMPTY marks free slots. */
+    private final long[] _keys;
+    /** _tables[h] is the table stored under _keys[h]. */
+    private final int[][] _tables;
+    /** Number of entries in use. */
+    private int _size;
+}
@@ -10,7 +10,14 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        textui.runClasses(PermutationTest.class, MovingRotorTest.class);
+        textui.runClasses(PermutationTest.class, MovingRotorTest.class,
+                          CharactersTest.class, MachTest.class,
+                          ServerTest.class, BombeTest.class,
+                          SolverTest.class, LaneEngineTest.class,
+                          KeyBatchTest.class, MetricsTest.class,
+                          StreamTest.class, ProcessorTest.class,
+                          BytesTest.class, KeystreamTest.class,
+                          BatchTest.class, CatalogTest.class);
     }
 
 }
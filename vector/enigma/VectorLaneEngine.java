@@ -0,0 +1,150 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A LaneEngine that converts the messages of a batch in groups, one
+ * message per lane of an IntVector.  Each lane holds its own rotor
+ * positions, and all rotor, notch and plugboard lookups are gathers from
+ * the tables of the LaneBatch, so that the lanes may use different
+ * rotors and plugboards.  A group takes as many steps as its longest
+ * message, so batches of messages of similar lengths work best.
+ *
+ * This class needs the jdk.incubator.vector module, and so is compiled
+ * separately from the rest of the package (see vector/Makefile);
+ * LaneEngine.create uses it when it can be loaded.
+ *
+ * @author John Schulz
+ */
+class VectorLaneEngine implements LaneEngine {
+
+    @Override
+    public void convert(LaneBatch batch) {
+        int[] scratch = new int[LANES];
+        for (int k = 0; k < batch.count(); k += LANES) {
+            convertGroup(batch, k, Math.min(LANES, batch.count() - k),
+                         scratch);
+        }
+    }
+
+    /**
+     * Convert messages FIRST .. FIRST + COUNT - 1 of BATCH, where
+     * COUNT <= LANES, using SCRATCH, of length LANES, for gather
+     * indices.  The state of the lanes is kept in arrays, LANES elements
+     * per slot, so that vectors are only ever held in local variables.
+     */
+    private void convertGroup(LaneBatch batch, int first, int count,
+                              int[] scratch) {
+        int size = batch.size(), n = batch.numRotors(), last = n - 1;
+        int[] forward = batch.forwardTable(),
+            backward = batch.backwardTable(), notches = batch.notchTable(),
+            rotates = batch.rotates(), bases = batch.rotorBases(),
+            positions = batch.positions(), text = batch.text();
+        int[] base = new int[n * LANES], pos = new int[n * LANES],
+            rotating = new int[n * LANES];
+        for (int x = 0; x < n; x += 1) {
+            for (int j = 0; j < count; j += 1) {
+                int s = (first + j) * n + x;
+                base[x * LANES + j] = bases[s];
+                pos[x * LANES + j] = positions[s];
+                rotating[x * LANES + j] = rotates[bases[s] / size];
+            }
+        }
+        int maxLength = 0;
+        int[] start = new int[LANES], length = new int[LANES],
+            plugBase = new int[LANES], where = new int[LANES];
+        for (int j = 0; j < count; j += 1) {
+            start[j] = batch.start(first + j);
+            length[j] = batch.length(first + j);
+            plugBase[j] = (first + j) * size;
+            maxLength = Math.max(maxLength, length[j]);
+        }
+        IntVector starts = IntVector.fromArray(SPECIES, start, 0),
+            lengths = IntVector.fromArray(SPECIES, length, 0),
+            plugs = IntVector.fromArray(SPECIES, plugBase, 0);
+        for (int t = 0; t < maxLength; t += 1) {
+            VectorMask<Integer> active =
+                lengths.compare(VectorOperators.GT, t);
+            VectorMask<Integer> right = active;
+            for (int x = last; x >= 0; x -= 1) {
+                IntVector p = IntVector.fromArray(SPECIES, pos, x * LANES);
+                VectorMask<Integer> advance = right;
+                if (x > 0) {
+                    IntVector b =
+                        IntVector.fromArray(SPECIES, base, x * LANES);
+                    VectorMask<Integer> notch =
+                        gather(notches, b.add(p), scratch)
+                        .compare(VectorOperators.NE, 0).and(active);
+                    advance = advance.or(notch.and(
+                        rotating(rotating, x - 1)));
+                    right = notch;
+                }
+                IntVector next = p.add(1);
+                next = next.blend(0, next.compare(VectorOperators.EQ, size));
+                p.blend(next, advance.and(rotating(rotating, x)))
+                    .intoArray(pos, x * LANES);
+            }
+            starts.add(t).intoArray(where, 0);
+            IntVector c =
+                IntVector.fromArray(SPECIES, text, 0, where, 0, active);
+            c = gather(batch.plugForward(), plugs.add(c), scratch);
+            for (int x = last; x >= 0; x -= 1) {
+                c = through(forward, base, pos, x, c, size, scratch);
+            }
+            for (int x = 1; x <= last; x += 1) {
+                c = through(backward, base, pos, x, c, size, scratch);
+            }
+            c = gather(batch.plugBackward(), plugs.add(c), scratch);
+            c.intoArray(text, 0, where, 0, active);
+        }
+        for (int x = 0; x < n; x += 1) {
+            for (int j = 0; j < count; j += 1) {
+                positions[(first + j) * n + x] = pos[x * LANES + j];
+            }
+        }
+    }
+
+    /** Return the mask of the lanes in which the rotor in slot X rotates,
+     *  given the flags ROTATING, LANES per slot. */
+    private static VectorMask<Integer> rotating(int[] rotating, int x) {
+        return IntVector.fromArray(SPECIES, rotating, x * LANES)
+            .compare(VectorOperators.NE, 0);
+    }
+
+    /**
+     * Return the result of passing the characters C through the rotors
+     * in slot X, whose tables start in TABLE at the offsets in BASE and
+     * whose settings are in POS (LANES elements per slot), for an
+     * alphabet of SIZE characters, using SCRATCH.
+     */
+    private static IntVector through(int[] table, int[] base, int[] pos,
+                                     int x, IntVector c, int size,
+                                     int[] scratch) {
+        IntVector p = IntVector.fromArray(SPECIES, pos, x * LANES),
+            b = IntVector.fromArray(SPECIES, base, x * LANES);
+        IntVector in = c.add(p);
+        in = in.sub(size, in.compare(VectorOperators.GE, size));
+        IntVector out = gather(table, b.add(in), scratch).sub(p);
+        return out.add(size, out.compare(VectorOperators.LT, 0));
+    }
+
+    /**
+     * Return the vector of TABLE[INDEX[J]], using SCRATCH to hold the
+     * indices.
+     */
+    private static IntVector gather(int[] table, IntVector index,
+                                    int[] scratch) {
+        index.intoArray(scratch, 0);
+        return IntVector.fromArray(SPECIES, table, 0, scratch, 0);
+    }
+
+    /** The vector shape used. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Number of lanes, and so of messages converted together. */
+    private static final int LANES = SPECIES.length();
+}